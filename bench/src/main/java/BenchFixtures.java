@@ -0,0 +1,165 @@
+import chatapp.bench.ServerFixtures;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// ServerFixtures'ın sunucu sınıflarıyla aynı (isimsiz) paketteki uygulaması.
+// Sunucu sınıfları olduğu gibi kullanılır; yalnızca ağ (giden kuyruğa yazıp hemen boşaltan bağlantı) ve
+// veritabanı (InMemoryMessageStore) devre dışı bırakılır. DemoServer'ın statik alanları sınıf yüklenirken oluşturulur,
+// veritabanı havuzu ilk ödünç almaya kadar bağlantı açmaz.
+public final class BenchFixtures implements ServerFixtures {
+
+    // Ölçümler arasında çakışmasın diye her odaya ayrı bir id verilir
+    private static final AtomicInteger roomIds = new AtomicInteger(1_000_000);
+
+    @Override
+    public RoomFixture room(int members, boolean participantDeltas) {
+        return new BenchRoom(roomIds.incrementAndGet(), members, participantDeltas);
+    }
+
+    @Override
+    public String hashPassword(String password) {
+        return HashingUtil.hashPassword(password);
+    }
+
+    @Override
+    public PersistenceFixture persistence(int batchSize, long flushIntervalMillis) {
+        return new BenchPersistence(batchSize, flushIntervalMillis);
+    }
+
+    // Ağ yerine giden kuyruğa yazan bağlantı. Yazıcı thread'inin işi (kuyruktan alma) çağıran thread'de hemen yapılır,
+    // böylece kuyruk dolmaz ve ölçüm kuyruğa ekleme + alma maliyetini içerir.
+    private static final class QueueConnection implements ClientConnection {
+
+        private final OutboundQueue queue = new OutboundQueue(1024, OutboundQueue.SlowConsumerPolicy.DROP_OLDEST, 0);
+        private final LongAdder delivered;
+        private volatile boolean binary;
+
+        QueueConnection(LongAdder delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void send(OutboundMessage message) {
+            if (queue.offer(message)) {
+                OutboundMessage taken = queue.poll();
+                if (taken != null) {
+                    // Yazıcının yaptığı gibi çerçeve baytları bir kez kodlanır (ilk alıcıdan sonra paylaşılır)
+                    if (binary) {
+                        taken.frameBytes();
+                    }
+                    delivered.increment();
+                }
+            }
+        }
+
+        @Override
+        public void useBinaryFrames() {
+            binary = true;
+        }
+
+        @Override
+        public void useCompression() {
+        }
+
+        @Override
+        public void close() {
+            queue.close();
+        }
+    }
+
+    private static final class BenchRoom implements RoomFixture {
+
+        private final int roomId;
+        private final boolean participantDeltas;
+        private final LongAdder delivered = new LongAdder();
+        private final List<DemoServer.ClientHandler> members = new ArrayList<>();
+        private final AtomicInteger messageIds = new AtomicInteger();
+
+        BenchRoom(int roomId, int size, boolean participantDeltas) {
+            this.roomId = roomId;
+            this.participantDeltas = participantDeltas;
+            for (int i = 1; i <= size; i++) {
+                DemoServer.ClientHandler member = newMember(i);
+                member.enterRoom();
+                members.add(member);
+            }
+        }
+
+        private DemoServer.ClientHandler newMember(int userId) {
+            QueueConnection connection = new QueueConnection(delivered);
+            connection.useBinaryFrames();
+            Set<String> capabilities = participantDeltas ? Set.of("delta", "binary") : Set.of("binary");
+            return new DemoServer.ClientHandler(connection, userId, "kullanici" + userId, roomId, capabilities);
+        }
+
+        @Override
+        public int broadcast(String text) {
+            long before = delivered.sum();
+            DemoServer.ClientHandler sender = members.get(0);
+            sender.broadcastMessage(new ChatMessage(messageIds.incrementAndGet(), roomId, 1, "kullanici1", text, System.currentTimeMillis()));
+            return (int) (delivered.sum() - before);
+        }
+
+        @Override
+        public Object participantList() {
+            return DemoServer.ClientHandler.participantList(members.get(0).room().participants()).frameBytes();
+        }
+
+        @Override
+        public Object participantSnapshot() {
+            return DemoServer.ClientHandler.participantSnapshot(members.get(0).room().participants()).frameBytes();
+        }
+
+        @Override
+        public void joinAndLeave(int userId) {
+            DemoServer.ClientHandler member = newMember(userId);
+            member.announceJoin(member.enterRoom());
+            member.removeFromRoom();
+        }
+
+        @Override
+        public void close() {
+            for (DemoServer.ClientHandler member : members) {
+                member.removeFromRoom();
+            }
+            members.clear();
+            // Boşalan oda sunucudaki gibi bellekte kalırdı; ölçümler arasında birikmesin diye hemen çıkarılır
+            DemoServer.evictIdleRooms(0);
+        }
+    }
+
+    private static final class BenchPersistence implements PersistenceFixture {
+
+        private final MessageWriter writer;
+        private final AtomicInteger messageIds = new AtomicInteger();
+
+        BenchPersistence(int batchSize, long flushIntervalMillis) {
+            // Bellek deposu oda başına en fazla 10000 mesaj tutar; ölçüm boyunca bellek büyümez
+            this.writer = new MessageWriter(new InMemoryMessageStore(false, 10_000), MessageWriter.Durability.AFTER_BROADCAST,
+                    batchSize, flushIntervalMillis, 10_000, 0, 1, 1);
+        }
+
+        @Override
+        public void append(int roomId, String text) throws Exception {
+            writer.append(new ChatMessage(messageIds.incrementAndGet(), roomId, 1, "kullanici1", text, System.currentTimeMillis()));
+        }
+
+        @Override
+        public void flush() throws Exception {
+            writer.flush().get();
+        }
+
+        @Override
+        public long storedCount() {
+            return writer.getCommittedCount();
+        }
+
+        @Override
+        public void close() {
+            writer.shutdown(5_000);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package chatapp.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Tüm ölçümleri (veya argümandaki düzenli ifadeye uyanları) -Dbench.threads listesindeki her thread sayısıyla çalıştırır.
+// Her çalıştırmaya GC profilleyicisi eklenir: işlem başına ayrılan bayt (gc.alloc.rate.norm) ve GC sayısı raporlanır.
+// Örnek: java -Dbench.threads=1,4,16 -cp bench/target/benchmarks.jar chatapp.bench.BenchRunner Broadcast
+public final class BenchRunner {
+
+    private BenchRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "chatapp\\.bench\\..*Benchmark";
+        for (String value : System.getProperty("bench.threads", "1,4,16").split(",")) {
+            int threads = Integer.parseInt(value.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("bench-" + threads + "t.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package chatapp.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Bir sohbet mesajının odadaki tüm üyelere dağıtılması (son mesaj tamponu, tek kodlama, her üyenin giden kuyruğu).
+// Oda paylaşılır; birden çok thread (-t) aynı odaya aynı anda yayın yapar.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int roomSize;
+
+    private ServerFixtures.RoomFixture room;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        room = ServerFixtures.load().room(roomSize, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        room.close();
+    }
+
+    @Benchmark
+    public int broadcast() {
+        return room.broadcast("merhaba, bu bir ölçüm mesajıdır");
+    }
+}
@@ -0,0 +1,41 @@
+package chatapp.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Oda şifresi özeti (HashingUtil.hashPassword), oda oluşturma ve katılma doğrulamasında çağrılır.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+
+    @Param({"8", "64"})
+    public int passwordLength;
+
+    private ServerFixtures fixtures;
+    private String password;
+
+    @Setup
+    public void setUp() {
+        fixtures = ServerFixtures.load();
+        password = "s".repeat(passwordLength);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return fixtures.hashPassword(password);
+    }
+}
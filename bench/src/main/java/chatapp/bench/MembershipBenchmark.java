@@ -0,0 +1,50 @@
+package chatapp.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Katılma/ayrılma çalkantısı: yeni üye odaya girer (rooms haritası + oda kilidi), katılma duyurulur ve üye hemen ayrılır.
+// Tüm thread'ler aynı odada çalıştığı için -t ile odanın üyelik kilidi ve rooms haritası üzerindeki çekişme ölçülür.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MembershipBenchmark {
+
+    // Odada kalıcı olarak bulunan üye sayısı (duyuruların gittiği kişi sayısı)
+    @Param({"10", "100"})
+    public int roomSize;
+
+    private final AtomicInteger userIds = new AtomicInteger(1_000_000);
+    private ServerFixtures.RoomFixture room;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        room = ServerFixtures.load().room(roomSize, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        room.close();
+    }
+
+    @Benchmark
+    public void joinAndLeave() {
+        room.joinAndLeave(userIds.incrementAndGet());
+    }
+}
@@ -0,0 +1,51 @@
+package chatapp.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Tam katılımcı listesinin oluşturulması ve kodlanması (eski istemcilerdeki UPDATE_PARTICIPANTS_LIST ve sürümlü PARTICIPANTS_SNAPSHOT).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParticipantListBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int roomSize;
+
+    private ServerFixtures.RoomFixture room;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        room = ServerFixtures.load().room(roomSize, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        room.close();
+    }
+
+    @Benchmark
+    public Object fullList() {
+        return room.participantList();
+    }
+
+    @Benchmark
+    public Object versionedSnapshot() {
+        return room.participantSnapshot();
+    }
+}
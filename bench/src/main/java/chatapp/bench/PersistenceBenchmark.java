@@ -0,0 +1,59 @@
+package chatapp.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Mesaj kalıcılığı: MessageWriter'ın günlüğü, batch'lemesi ve commit bildirimi; veritabanı yerine bellekteki yedekle.
+// append(): yayın yolunun ödediği maliyet (günlüğe ekleme). appendAndFlush(): bir grup mesajın yazılmasının tamamı.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int GROUP = 100;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private ServerFixtures.PersistenceFixture persistence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persistence = ServerFixtures.load().persistence(batchSize, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        persistence.close();
+    }
+
+    @Benchmark
+    public void append() throws Exception {
+        persistence.append(1, "merhaba, bu bir ölçüm mesajıdır");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP)
+    public void appendAndFlush() throws Exception {
+        for (int i = 0; i < GROUP; i++) {
+            persistence.append(1, "merhaba, bu bir ölçüm mesajıdır");
+        }
+        persistence.flush();
+    }
+}
@@ -0,0 +1,53 @@
+package chatapp.bench;
+
+// Ölçümlerin sunucu sınıflarına erişim noktası.
+// Sunucu sınıfları isimsiz pakette (default package) olduğu için isimli bir paketten doğrudan kullanılamaz; JMH ise
+// ölçüm sınıflarının isimli bir pakette olmasını ister. Bu arayüzü isimsiz paketteki BenchFixtures sınıfı uygular
+// ve ölçümler onu adıyla yükler.
+public interface ServerFixtures {
+
+    static ServerFixtures load() {
+        try {
+            return (ServerFixtures) Class.forName("BenchFixtures").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchFixtures yüklenemedi", e);
+        }
+    }
+
+    // Bellekte, üyeleri gerçek DemoServer.ClientHandler olan bir oda. Üyelerin bağlantıları ağ yerine giden kuyruğa yazar.
+    RoomFixture room(int members, boolean participantDeltas);
+
+    String hashPassword(String password);
+
+    // Veritabanı yerine bellekteki bir yedeğe yazan MessageWriter
+    PersistenceFixture persistence(int batchSize, long flushIntervalMillis);
+
+    interface RoomFixture {
+
+        // Odaya bir sohbet mesajı yayınlar (son mesaj tamponu + tek kodlama + tüm üyelerin kuyruğu). Teslim sayısını döner.
+        int broadcast(String text);
+
+        // Eski istemcilere giden tam katılımcı listesini oluşturur ve kodlar
+        Object participantList();
+
+        // Değişiklik destekleyen istemcilere giden tam listeyi (sürümlü) oluşturur ve kodlar
+        Object participantSnapshot();
+
+        // Odaya yeni bir üye katılır (duyurularla birlikte) ve hemen ayrılır
+        void joinAndLeave(int userId);
+
+        void close();
+    }
+
+    interface PersistenceFixture {
+
+        void append(int roomId, String text) throws Exception;
+
+        // Şu ana kadar eklenen mesajların yazılmasını bekler
+        void flush() throws Exception;
+
+        long storedCount();
+
+        void close();
+    }
+}
@@ -45,7 +45,8 @@ CREATE TABLE `rooms` (
   `id` int(11) NOT NULL,
   `room_name` varchar(128) NOT NULL,
   `room_password` varchar(128) NOT NULL,
-  `creator_id` int(11) NOT NULL
+  `creator_id` int(11) NOT NULL,
+  `deleted_at` datetime DEFAULT NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
 
 --
@@ -92,7 +93,7 @@ INSERT INTO `users` (`id`, `username`, `password`, `created_at`) VALUES
 ALTER TABLE `messages`
   ADD PRIMARY KEY (`id`),
   ADD KEY `sender_id` (`sender_id`,`room_id`),
-  ADD KEY `room_id` (`room_id`);
+  ADD KEY `room_id_id` (`room_id`,`id`);
 
 --
 -- Tablo için indeksler `rooms`
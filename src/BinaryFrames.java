@@ -0,0 +1,257 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Uzunluk önekli ikili çerçeve protokolü. İstemci el sıkışmada "HELLO ... binary" gönderirse bağlantı bu satırdan sonra çerçevelere geçer.
+// Çerçeve: [uzunluk int32][opcode 1 bayt][oda id int32][sıra no int64][UTF-8 yük]. Uzunluk, kendisinden sonraki bayt sayısıdır.
+// Metin protokolünde komutlar her sohbet satırı LEAVE_ROOM/CLOSE_ROOM ile karşılaştırılarak bulunuyordu; "LEAVE_ROOM" yazan kullanıcı odadan çıkıyordu.
+// Burada komut opcode'dur, sohbet metni hiçbir zaman komut olarak yorumlanmaz. Sunucu ve istemci aynı kodlayıcıyı kullanır.
+final class BinaryFrames {
+
+    // İstemci -> sunucu
+    static final byte JOIN = 1; // oda id: katılınacak oda, yük: userId (int32) + kullanıcı adı
+    static final byte CHAT = 2; // yük: mesaj metni. Sunucu -> istemci yönünde: sıra no = mesaj id'si (yoksa 0), yük: gösterilecek satır
+    static final byte LEAVE_ROOM = 3;
+    static final byte CLOSE_ROOM = 4;
+    static final byte HISTORY_BEFORE = 5; // sıra no: imleç (bu id'den eski mesajlar istenir)
+    static final byte PARTICIPANTS_SYNC = 6;
+    // Sunucu -> istemci: metin protokolündeki kontrol satırlarından biri (ROOM_OWNER, HISTORY_*, PARTICIPANT*, ROOM_CLOSED ...)
+    static final byte CONTROL = 16;
+    // Sunucu -> istemci: "deflate" yeteneğinde, art arda gelen çerçevelerin sıkıştırılmış hali (bkz. FrameCompressor).
+    // Sıra no: açılmış uzunluk. Yük, bağlantı boyunca süren tek bir deflate akışının SYNC_FLUSH ile biten parçasıdır.
+    static final byte COMPRESSED = 17;
+
+    // opcode + oda id + sıra no
+    static final int HEADER_BYTES = 1 + 4 + 8;
+
+    private BinaryFrames() {
+    }
+
+    // Çözülen her çerçeve için çağrılır. Yük tamponu yalnızca çağrı süresince geçerlidir (kopyalanmaz, yeniden kullanılır).
+    // İşlemeye devam edilmeyecekse (örneğin bağlantı kapandıysa) false döner.
+    interface FrameHandler {
+        boolean onFrame(byte opcode, int roomId, long seq, ByteBuffer payload);
+    }
+
+    static byte[] encode(byte opcode, int roomId, long seq, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(4 + HEADER_BYTES + payload.length);
+        frame.putInt(HEADER_BYTES + payload.length);
+        frame.put(opcode);
+        frame.putInt(roomId);
+        frame.putLong(seq);
+        frame.put(payload);
+        return frame.array();
+    }
+
+    // Yükü String'e çevirir. Yalnızca metnin gerçekten gerektiği yerde (sohbet mesajı, kullanıcı adı) çağrılır.
+    static String text(ByteBuffer payload) {
+        if (payload.hasArray()) {
+            return new String(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // İstemci tarafı: tek bir çerçeve yazar (birden çok thread aynı akışa yazabilir).
+    static void write(DataOutputStream out, byte opcode, int roomId, long seq, String text) throws IOException {
+        write(out, opcode, roomId, seq, text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void write(DataOutputStream out, byte opcode, int roomId, long seq, byte[] payload) throws IOException {
+        byte[] frame = encode(opcode, roomId, seq, payload);
+        synchronized (out) {
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    // JOIN çerçevesinin yükü: userId (int32) + kullanıcı adı (UTF-8)
+    static byte[] joinPayload(int userId, String username) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + name.length).putInt(userId).put(name).array();
+    }
+
+    // Okunan çerçeve (istemci tarafı ve engelleyen sunucu okuyucusu için)
+    static final class Frame {
+
+        final byte opcode;
+        final int roomId;
+        final long seq;
+        final String text;
+        private final byte[] payload; // yalnızca COMPRESSED çerçevede (metne çevrilmez)
+
+        Frame(byte opcode, int roomId, long seq, String text) {
+            this(opcode, roomId, seq, text, null);
+        }
+
+        private Frame(byte opcode, int roomId, long seq, String text, byte[] payload) {
+            this.opcode = opcode;
+            this.roomId = roomId;
+            this.seq = seq;
+            this.text = text;
+            this.payload = payload;
+        }
+    }
+
+    // İstemci tarafı: bir sonraki çerçeveyi okur. Bağlantı çerçeve sınırında kapandıysa null döner.
+    static Frame read(DataInputStream in, int maxFrameBytes) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        checkLength(length, maxFrameBytes);
+        byte opcode = in.readByte();
+        int roomId = in.readInt();
+        long seq = in.readLong();
+        byte[] payload = new byte[length - HEADER_BYTES];
+        in.readFully(payload);
+        if (opcode == COMPRESSED) {
+            return new Frame(opcode, roomId, seq, null, payload);
+        }
+        return new Frame(opcode, roomId, seq, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    // İstemci tarafı okuyucu. COMPRESSED çerçevelerini bağlantı boyunca aynı Inflater ile açar ve içindeki çerçeveleri sırayla döner.
+    static final class Reader implements AutoCloseable {
+
+        private final DataInputStream in;
+        private final int maxFrameBytes;
+        private final Inflater inflater = new Inflater(true);
+        private final ArrayDeque<Frame> pending = new ArrayDeque<>();
+
+        Reader(DataInputStream in, int maxFrameBytes) {
+            this.in = in;
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        // Bir sonraki çerçeve; bağlantı kapandıysa null.
+        Frame next() throws IOException {
+            while (pending.isEmpty()) {
+                Frame frame = read(in, maxFrameBytes);
+                if (frame == null || frame.opcode != COMPRESSED) {
+                    return frame;
+                }
+                inflate(frame);
+            }
+            return pending.poll();
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+
+        private void inflate(Frame frame) throws IOException {
+            if (frame.seq < 0 || frame.seq > maxFrameBytes) {
+                throw new IOException("Geçersiz sıkıştırılmış çerçeve uzunluğu: " + frame.seq);
+            }
+            byte[] plain = new byte[(int) frame.seq];
+            inflater.setInput(frame.payload);
+            try {
+                int offset = 0;
+                while (offset < plain.length) {
+                    int n = inflater.inflate(plain, offset, plain.length - offset);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Sıkıştırılmış çerçeve eksik.");
+                    }
+                    offset += n;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Sıkıştırılmış çerçeve açılamadı: " + e.getMessage(), e);
+            }
+            DataInputStream frames = new DataInputStream(new ByteArrayInputStream(plain));
+            Frame inner;
+            while ((inner = read(frames, maxFrameBytes)) != null) {
+                pending.add(inner);
+            }
+        }
+    }
+
+    static void checkLength(int length, int maxFrameBytes) throws IOException {
+        if (length < HEADER_BYTES || length > maxFrameBytes) {
+            throw new IOException("Geçersiz çerçeve uzunluğu: " + length);
+        }
+    }
+
+    // Engellemeyen okuma için artımlı çözücü. Kanaldan gelen parçalar biriktirilir, tamamlanan çerçeveler
+    // birikim tamponu üzerindeki görünümlerle (String veya dizi oluşturmadan) işleyiciye verilir.
+    static final class Decoder {
+
+        private final int maxFrameBytes;
+        private ByteBuffer pending = ByteBuffer.allocate(1024); // yazma modunda
+
+        Decoder(int maxFrameBytes) {
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        // Girdideki tüm baytları tüketir. Çerçeve sınırı aşıldıysa IOException fırlatır; işleyici durmak isterse false döner.
+        boolean feed(ByteBuffer in, FrameHandler handler) throws IOException {
+            while (in.hasRemaining()) {
+                if (!pending.hasRemaining()) {
+                    grow();
+                }
+                int chunk = Math.min(in.remaining(), pending.remaining());
+                ByteBuffer slice = in.slice(in.position(), chunk);
+                pending.put(slice);
+                in.position(in.position() + chunk);
+                if (!drain(handler)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // İşleyici durduğu için birikimde kalmış tam çerçeveleri işler (duraklatılan okuma devam ederken)
+        boolean drainPending(FrameHandler handler) throws IOException {
+            return drain(handler);
+        }
+
+        // Birikimdeki tam çerçeveleri işler, yarım kalanı tamponun başına taşır.
+        private boolean drain(FrameHandler handler) throws IOException {
+            pending.flip();
+            try {
+                while (pending.remaining() >= 4) {
+                    int start = pending.position();
+                    int length = pending.getInt(start);
+                    checkLength(length, maxFrameBytes);
+                    if (pending.remaining() < 4 + length) {
+                        break;
+                    }
+                    byte opcode = pending.get(start + 4);
+                    int roomId = pending.getInt(start + 5);
+                    long seq = pending.getLong(start + 9);
+                    ByteBuffer payload = pending.slice(start + 4 + HEADER_BYTES, length - HEADER_BYTES);
+                    pending.position(start + 4 + length);
+                    if (!handler.onFrame(opcode, roomId, seq, payload)) {
+                        return false;
+                    }
+                }
+            } finally {
+                pending.compact();
+            }
+            return true;
+        }
+
+        // Tampon, en büyük çerçeveyi alabilecek boyuta kadar iki katına çıkarılır.
+        private void grow() throws IOException {
+            int limit = 4 + maxFrameBytes;
+            if (pending.capacity() >= limit) {
+                throw new IOException("Çerçeve sınırı aşıldı.");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(pending.capacity() * 2, limit));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// Kaydedilmiş bir sohbet mesajı. Gönderenin adı çözülmüş olarak taşınır, böylece geçmiş gönderilirken tekrar sorgulanmaz.
+final class ChatMessage {
+
+    private final long id;
+    private final int roomId;
+    private final int senderId;
+    private final String senderName;
+    private final String text;
+    private final long timestampMillis;
+
+    ChatMessage(long id, int roomId, int senderId, String senderName, String text, long timestampMillis) {
+        this.id = id;
+        this.roomId = roomId;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.text = text;
+        this.timestampMillis = timestampMillis;
+    }
+
+    long id() {
+        return id;
+    }
+
+    int roomId() {
+        return roomId;
+    }
+
+    int senderId() {
+        return senderId;
+    }
+
+    String senderName() {
+        return senderName;
+    }
+
+    String text() {
+        return text;
+    }
+
+    long timestampMillis() {
+        return timestampMillis;
+    }
+}
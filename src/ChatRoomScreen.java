@@ -3,10 +3,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.*;
 import java.net.Socket;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,15 +12,36 @@ public class ChatRoomScreen {
 
     private Socket socket; // Sunucuya bağlantıyı temsil eder.
     private PrintWriter out; // Sunucuya mesaj göndermek için kullanılan PrintWriter nesnesi.
+    // İkili protokolde mesajlar ve komutlar uzunluk önekli çerçevelerle gönderilir (bkz. BinaryFrames).
+    // -Dchat.protocol=text ile eski satır tabanlı protokol kullanılır.
+    private static final boolean BINARY_PROTOCOL = !"text".equalsIgnoreCase(System.getProperty("chat.protocol", "binary"));
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private DataOutputStream frameOut; // ikili protokolde sunucuya giden çerçeveler
+    private int roomId;
     private JTextArea chatArea; // Kullanıcıların mesajlarını ve diğer bilgileri görüntülediği bir metin alanı.
     private JFrame frame; // Sohbet odası arayüzünü temsil eden ana pencere.
     private UserSession userData; // Kullanıcı oturum bilgilerini tutan sınıf.
     private DefaultListModel<String> participantsListModel; // Katılımcı listesinin modelini tutar (dinamik olarak güncellenebilir)
     private JList<String> participantsList; // Katılımcıların görüntülendiği JList arayüz şeyi
+    private long participantVersion = -1; // Uygulanan son katılımcı listesi sürümü (yalnızca Swing thread'inde kullanılır)
+    private boolean participantSyncRequested; // Tam liste istendi, henüz gelmedi
+    private long lastSeenParticipantVersion = -1; // Gelen en büyük sürüm (ilk tam listeden önce gelen değişiklikler dahil)
+    private JButton olderMessagesButton; // Sunucudan önceki geçmiş sayfasını isteyen buton
+    private volatile long historyCursor = -1; // Ekrandaki en eski mesajın id'si (-1: daha eski mesaj yok)
+    private JButton closeRoomButton; // Yalnızca oda sahibine gösterilir (sahip bilgisi sunucudan ROOM_OWNER ile gelir)
 
     public ChatRoomScreen() throws SQLException {
+        this("localhost", 9091);
+    }
+
+    // Küme modunda sunucu odanın sahibi olan düğüme "REDIRECT <host:port>" ile yönlendirebilir; ekran o adresle yeniden açılır
+    public ChatRoomScreen(String host, int port) throws SQLException {
         chatArea = new JTextArea();
         chatArea.setEditable(false);
+        olderMessagesButton = new JButton("Önceki mesajlar");
+        olderMessagesButton.setEnabled(false);
+        closeRoomButton = new JButton("Odayı Kapat");
+        closeRoomButton.setVisible(false);
 
         frame = new JFrame("Sohbet Odası"); // Sınıf değişkenine atama
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -31,20 +49,60 @@ public class ChatRoomScreen {
         frame.setLayout(new BorderLayout());
 
         try {
-            socket = new Socket("localhost", 9091);
+            socket = new Socket(host, port);
             out = new PrintWriter(socket.getOutputStream(), true);
+            roomId = UserSession.getInstance().getRoomId();
 
-            // Kullanıcı bilgilerini sunucuya gönder
-            out.println(UserSession.getInstance().getUserId());
-            out.println(UserSession.getInstance().getUsername());
-            out.println(UserSession.getInstance().getRoomId());
+            // Desteklenen yetenekler: delta = katılımcı listesi değişiklikleri tek tek gelir, binary = ikili çerçeve protokolü,
+            // deflate = büyük çerçeve grupları (geçmiş, yoğun oda) sıkıştırılmış gelir
+            if (BINARY_PROTOCOL) {
+                out.println("HELLO delta binary deflate");
+                frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                // Kullanıcı bilgileri tek bir JOIN çerçevesiyle gönderilir
+                BinaryFrames.write(frameOut, BinaryFrames.JOIN, roomId, 0,
+                        BinaryFrames.joinPayload(UserSession.getInstance().getUserId(), UserSession.getInstance().getUsername()));
+            } else {
+                out.println("HELLO delta");
+                // Kullanıcı bilgilerini sunucuya gönder
+                out.println(UserSession.getInstance().getUserId());
+                out.println(UserSession.getInstance().getUsername());
+                out.println(roomId);
+            }
 
             // Sunucudan gelen mesajları dinlemek için ayrı bir thread
             new Thread(() -> {
-                try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-                    String line;
-                    while ((line = in.readLine()) != null) {
-                        if ("ROOM_CLOSED".equals(line)) {
+                try (InputStream input = new BufferedInputStream(socket.getInputStream());
+                     BinaryFrames.Reader frames = new BinaryFrames.Reader(new DataInputStream(input), MAX_FRAME_BYTES)) {
+                    BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                    BinaryFrames.Frame incoming;
+                    while ((incoming = nextFrame(frames, lines)) != null) {
+                        if (incoming.opcode == BinaryFrames.CHAT) {
+                            // İkili protokolde sohbet satırları hiçbir zaman komut olarak yorumlanmaz
+                            String chatLine = incoming.text;
+                            SwingUtilities.invokeLater(() -> chatArea.append(chatLine + "\n"));
+                            continue;
+                        }
+                        String line = incoming.text;
+                        if (line.startsWith("ROOM_OWNER ")) {
+                            // Oda sahibi ise "Odayı Kapat" butonu gözüksün
+                            boolean owner = Integer.parseInt(line.substring(11).trim()) == UserSession.getInstance().getUserId();
+                            SwingUtilities.invokeLater(() -> closeRoomButton.setVisible(owner));
+                        } else if (line.startsWith("HISTORY_CURSOR ")) {
+                            // Sunucuda daha eski mesajlar var
+                            historyCursor = Long.parseLong(line.substring(15).trim());
+                            SwingUtilities.invokeLater(() -> olderMessagesButton.setEnabled(true));
+                        } else if ("HISTORY_END".equals(line)) {
+                            historyCursor = -1;
+                            SwingUtilities.invokeLater(() -> olderMessagesButton.setEnabled(false));
+                        } else if (line.startsWith("HISTORY_PAGE ")) {
+                            // İstenen eski sayfa: belirtilen sayıda satır gelir ve sohbetin en üstüne eklenir
+                            int count = Integer.parseInt(line.substring(13).trim());
+                            StringBuilder page = new StringBuilder();
+                            for (int i = 0; i < count && (incoming = nextFrame(frames, lines)) != null; i++) {
+                                page.append(incoming.text).append("\n");
+                            }
+                            SwingUtilities.invokeLater(() -> chatArea.insert(page.toString(), 0));
+                        } else if ("ROOM_CLOSED".equals(line)) {
                             int response = JOptionPane.showConfirmDialog(
                                     null,
                                     "Oda kapatıldı.",
@@ -58,10 +116,45 @@ public class ChatRoomScreen {
                                 frame.dispose();  // Mevcut pencereyi kapat
                             }
                             break; // Döngüden çık
+                        } else if ("MESSAGE_REJECTED".equals(line)) {
+                            // Sunucu aşırı yük altında, son mesaj işlenmedi
+                            SwingUtilities.invokeLater(() -> chatArea.append("[!] Sunucu yoğun, mesajınız gönderilemedi.\n"));
+                        } else if (line.startsWith("REDIRECT ")) {
+                            String address = line.substring(9).trim();
+                            int colon = address.lastIndexOf(':');
+                            SwingUtilities.invokeLater(() -> {
+                                try {
+                                    new ChatRoomScreen(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+                                } catch (SQLException e) {
+                                    e.printStackTrace();
+                                }
+                                frame.dispose();
+                            });
+                            break;
+                        } else if ("ROOM_NOT_FOUND".equals(line)) {
+                            JOptionPane.showMessageDialog(null, "Oda bulunamadı.", "Hata", JOptionPane.ERROR_MESSAGE);
+                            SwingUtilities.invokeLater(() -> {
+                                new UserScreen(); // Kullanıcı ekranına dön
+                                frame.dispose();
+                            });
+                            break;
+                        } else if (line.startsWith("PARTICIPANTS_SNAPSHOT ")) {
+                            // Listenin tamamı: PARTICIPANTS_SNAPSHOT <sürüm> <ad1,ad2,...>
+                            String[] parts = line.split(" ", 3);
+                            long version = Long.parseLong(parts[1]);
+                            String[] users = parts.length > 2 ? parts[2].split(",") : new String[0];
+                            SwingUtilities.invokeLater(() -> applyParticipantSnapshot(version, users));
+                        } else if (line.startsWith("PARTICIPANT_JOINED ") || line.startsWith("PARTICIPANT_LEFT ")) {
+                            // Tek değişiklik: PARTICIPANT_JOINED|PARTICIPANT_LEFT <sürüm> <ad>
+                            String[] parts = line.split(" ", 3);
+                            boolean joined = "PARTICIPANT_JOINED".equals(parts[0]);
+                            long version = Long.parseLong(parts[1]);
+                            String user = parts.length > 2 ? parts[2] : "";
+                            SwingUtilities.invokeLater(() -> applyParticipantChange(version, joined, user));
                         } else if (line.startsWith("UPDATE_PARTICIPANTS_LIST ")) {
-                            // Katılımcı listesini güncelle
+                            // Katılımcı listesini güncelle (delta desteklemeyen sunucu)
                             String[] users = line.substring(25).split(",");
-                            updateParticipantsList(users);
+                            SwingUtilities.invokeLater(() -> updateParticipantsList(users));
                         } else {
                             chatArea.append(line + "\n");
                         }
@@ -85,39 +178,32 @@ public class ChatRoomScreen {
         JButton leaveRoomButton = new JButton("Odadan Ayrıl");
         participantsPanel.add(roomInfoLabel, BorderLayout.NORTH);
         participantsPanel.add(new JScrollPane(participantsList), BorderLayout.CENTER);
-        participantsPanel.add(leaveRoomButton, BorderLayout.SOUTH);
-
-        // Eğer kullanıcı oda sahibi ise "Odayı Kapat" butonu gözüksün
-        if (UserSession.getInstance().getUserId() == getRoomOwnerId(UserSession.getInstance().getRoomId())) {
-            // Kullanıcı oda sahibi ise "Odayı Kapat" butonu eklenir
-            JButton closeRoomButton = new JButton("Odayı Kapat");
-            closeRoomButton.addActionListener(e -> {
-                int confirm = JOptionPane.showConfirmDialog(frame, "Odayı kapatmak istediğinizden emin misiniz?", "Odayı Kapat", JOptionPane.YES_NO_OPTION);
-                if (confirm == JOptionPane.YES_OPTION) {
-                    out.println("CLOSE_ROOM");
-                    /*try {
-                        socket.close();
-                    } catch (IOException ex) {
-                        ex.printStackTrace();
-                    }*/
-                }
-            });
 
-            // "Odadan Ayrıl" butonunu aynı panelde tut
-            JPanel ownerButtonPanel = new JPanel();
-            ownerButtonPanel.setLayout(new GridLayout(2, 1)); // İki buton için 2 satırlı düzen
-            ownerButtonPanel.add(leaveRoomButton);
-            ownerButtonPanel.add(closeRoomButton);
+        // "Odayı Kapat" butonu, sunucu ROOM_OWNER ile kullanıcının oda sahibi olduğunu bildirene kadar gizli kalır
+        closeRoomButton.addActionListener(e -> {
+            int confirm = JOptionPane.showConfirmDialog(frame, "Odayı kapatmak istediğinizden emin misiniz?", "Odayı Kapat", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                sendCommand(BinaryFrames.CLOSE_ROOM, 0, "CLOSE_ROOM");
+            }
+        });
 
-            participantsPanel.add(ownerButtonPanel, BorderLayout.SOUTH);
-        } else {
-            // Kullanıcı oda sahibi değilse sadece "Odadan Ayrıl" butonunu göster
-            participantsPanel.add(leaveRoomButton, BorderLayout.SOUTH);
-        }
+        // "Odadan Ayrıl" butonunu aynı panelde tut
+        // (BorderLayout gizli butona yer ayırmaz)
+        JPanel buttonPanel = new JPanel(new BorderLayout());
+        buttonPanel.add(leaveRoomButton, BorderLayout.CENTER);
+        buttonPanel.add(closeRoomButton, BorderLayout.SOUTH);
+        participantsPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         frame.add(participantsPanel, BorderLayout.EAST);
 
         JPanel chatPanel = new JPanel(new BorderLayout());
+        olderMessagesButton.addActionListener(e -> {
+            if (historyCursor > 0) {
+                olderMessagesButton.setEnabled(false); // Cevap gelene kadar aynı sayfayı tekrar isteme
+                sendCommand(BinaryFrames.HISTORY_BEFORE, historyCursor, "HISTORY_BEFORE " + historyCursor);
+            }
+        });
+        chatPanel.add(olderMessagesButton, BorderLayout.NORTH);
         chatPanel.add(new JScrollPane(chatArea), BorderLayout.CENTER);
         JPanel inputPanel = new JPanel(new BorderLayout());
         JTextField messageInput = new JTextField();
@@ -125,7 +211,7 @@ public class ChatRoomScreen {
         sendButton.addActionListener(e -> {
             String message = messageInput.getText();
             if (!message.isEmpty()) {
-                out.println(message);
+                sendChat(message);
                 messageInput.setText("");
                 chatArea.append("Ben: " + message + "\n");
             }
@@ -136,7 +222,7 @@ public class ChatRoomScreen {
         frame.add(chatPanel, BorderLayout.CENTER);
 
         leaveRoomButton.addActionListener(e -> {
-            out.println("LEAVE_ROOM");
+            sendCommand(BinaryFrames.LEAVE_ROOM, 0, "LEAVE_ROOM");
             try {
                 socket.close();
             } catch (IOException ex) {
@@ -149,20 +235,78 @@ public class ChatRoomScreen {
         frame.setVisible(true);
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection("jdbc:mysql://localhost:3306/chatapp_db", "root", "");
+    // Listenin tamamı geldiğinde, yerel liste bu sürümden eskiyse yenisiyle değiştirilir
+    private void applyParticipantSnapshot(long version, String[] users) {
+        if (version < participantVersion) {
+            return;
+        }
+        participantVersion = version;
+        participantSyncRequested = false;
+        updateParticipantsList(users);
+        // Bu listeden daha yeni bir değişiklik önceden geldi ve atlandıysa liste tekrar istenir
+        if (lastSeenParticipantVersion > version) {
+            requestParticipantSync();
+        }
     }
 
-    private int getRoomOwnerId(int roomId) throws SQLException {
-        String query = "SELECT creator_id FROM rooms WHERE id = ?";
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, roomId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("creator_id");
-            }
+    // Tek bir değişikliği listeyi baştan oluşturmadan uygular.
+    // Sürüm beklenenden ileriyse arada kaybolan değişiklik vardır (örneğin yavaş bağlantıda atlanan mesaj); sunucudan tam liste istenir.
+    private void applyParticipantChange(long version, boolean joined, String user) {
+        lastSeenParticipantVersion = Math.max(lastSeenParticipantVersion, version);
+        if (participantVersion < 0 || version <= participantVersion) {
+            return; // İlk tam liste henüz gelmedi veya tam liste bu değişikliği zaten içeriyor
+        }
+        if (version != participantVersion + 1) {
+            requestParticipantSync();
+            return;
+        }
+        participantVersion = version;
+        if (joined) {
+            participantsListModel.addElement(user);
+        } else {
+            participantsListModel.removeElement(user);
+        }
+    }
+
+    private void requestParticipantSync() {
+        if (!participantSyncRequested) {
+            participantSyncRequested = true;
+            sendCommand(BinaryFrames.PARTICIPANTS_SYNC, 0, "PARTICIPANTS_SYNC");
+        }
+    }
+
+    // Sunucudan gelen bir sonraki mesaj. Metin protokolünde her satır kontrol satırı gibi işlenir (eski davranış).
+    private BinaryFrames.Frame nextFrame(BinaryFrames.Reader frames, BufferedReader lines) throws IOException {
+        if (BINARY_PROTOCOL) {
+            return frames.next();
+        }
+        String line = lines.readLine();
+        return line == null ? null : new BinaryFrames.Frame(BinaryFrames.CONTROL, roomId, 0, line);
+    }
+
+    private void sendChat(String message) {
+        if (!BINARY_PROTOCOL) {
+            out.println(message);
+            return;
+        }
+        try {
+            BinaryFrames.write(frameOut, BinaryFrames.CHAT, roomId, 0, message);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Komut ikili protokolde opcode ile, metin protokolünde textForm satırıyla gönderilir
+    private void sendCommand(byte opcode, long seq, String textForm) {
+        if (!BINARY_PROTOCOL) {
+            out.println(textForm);
+            return;
+        }
+        try {
+            BinaryFrames.write(frameOut, opcode, roomId, seq, (String) null);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        return -1; // Oda bulunamazsa -1 döner
     }
 
     // Katılımcı listesinde güncelleme yapacak metod
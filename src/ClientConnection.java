@@ -0,0 +1,23 @@
+// Bir istemciye giden bağlantının taşıma katmanından bağımsız hali.
+// DemoServer.ClientHandler oda ve protokol mantığını yürütür, baytların sokete nasıl yazıldığını bilmez.
+// Engelleyen (blocking) soketler için SocketConnection, NIO selector motoru için NioTransport.NioConnection kullanılır.
+interface ClientConnection {
+
+    // Önceden kodlanmış bir satırı istemciye gönderir. Aynı mesaj nesnesi birçok bağlantıya verilebilir.
+    void send(OutboundMessage message);
+
+    // Protokolün tek bir alıcıya giden bir satırını gönderir. Satır sonu karakteri uygulama tarafından eklenir.
+    default void send(String line) {
+        send(OutboundMessage.of(line));
+    }
+
+    // Bu çağrıdan sonra bağlantı uzunluk önekli ikili çerçevelerle okur ve yazar (bkz. BinaryFrames).
+    // El sıkışmada, istemciye henüz hiçbir şey gönderilmeden çağrılır.
+    void useBinaryFrames();
+
+    // İkili protokolde giden çerçeveler eşiği aşan gruplar halinde deflate ile sıkıştırılır (bkz. FrameCompressor).
+    void useCompression();
+
+    // Bağlantıyı kapatır. Kuyrukta bekleyen satırlar varsa önce onlar gönderilir.
+    void close();
+}
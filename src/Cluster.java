@@ -0,0 +1,606 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Küme modu: odalar birden çok sunucu sürecine (düğüm) dağıtılır. -Dchat.cluster.nodes ile tüm düğümlerin istemci adresleri verilir,
+// her oda tutarlı özetleme (consistent hashing, düğüm başına virtualNodes sanal nokta) ile tek bir sahip düğüme atanır.
+// Düğüm eklendiğinde yalnızca yeni düğümün halkada aldığı aralıktaki odalar taşınır.
+// Odanın üyeleri, yayın ve katılımcı listesi yalnızca sahip düğümde tutulur; oda mantığı tek düğümdeki gibi çalışır.
+//
+// İstemci sahibi olmayan bir düğüme bağlanırsa:
+//   "redirect": istemciye "REDIRECT <host:port>" gönderilir ve bağlantı kapatılır, istemci sahip düğüme yeniden bağlanır.
+//   "proxy" (varsayılan): bağlandığı düğüm (kenar) oturumu röle bağlantısı üzerinden sahip düğüme taşır. Sahip düğümde oturum,
+//   giden baytları röleye yazan bir RelayConnection ile sıradan bir ClientHandler olarak yaşar. İstemci fark etmez.
+//
+// Röle: her kenar düğüm her sahip düğüme tek bir TCP bağlantısı açar (istemci portu + relayPortOffset). Tüm vekil oturumlar bu bağlantıyı paylaşır.
+// Bir yayın aynı OutboundMessage nesnesiyle tüm üyelere gönderildiği için, röle yazıcısı art arda gelen aynı mesajları tek bir DELIVER
+// çerçevesinde birleştirir: mesaj düğüm başına bir kez taşınır, ardından alıcı oturum id'leri gelir. Kenar düğüm mesajı bir kez çözer
+// ve aynı nesneyi yerel bağlantılara verir; katılma/ayrılma bildirimleri ve katılımcı listeleri de aynı yoldan gider.
+// Röle bağlantısı koparsa üzerindeki tüm oturumlar kapatılır (IO_ERROR); istemciler yeniden bağlanır.
+// Kuyruğu dolan (karşı düğümü yavaş) röle bağlantısı da kapatılır; yavaş istemci politikasının düğümler arası karşılığıdır.
+//
+// Yerelde üç düğüm:
+//   java -Dchat.port=9091 -Dchat.cluster.nodes=127.0.0.1:9091,127.0.0.1:9092,127.0.0.1:9093 DemoServer
+//   java -Dchat.port=9092 -Dchat.cluster.nodes=... DemoServer   (röle portları 9191, 9192, 9193)
+final class Cluster {
+
+    enum Routing {
+        PROXY,
+        REDIRECT
+    }
+
+    // Düğüm listesi her düğümde aynı olmalıdır; röle el sıkışmasında özet karşılaştırılır
+    static final class Node {
+
+        private final int index;
+        private final String host;
+        private final int clientPort;
+        private final int relayPort;
+
+        Node(int index, String host, int clientPort, int relayPort) {
+            this.index = index;
+            this.host = host;
+            this.clientPort = clientPort;
+            this.relayPort = relayPort;
+        }
+
+        int index() {
+            return index;
+        }
+
+        String clientAddress() {
+            return host + ":" + clientPort;
+        }
+
+        @Override
+        public String toString() {
+            return "düğüm " + index + " (" + clientAddress() + ")";
+        }
+    }
+
+    // Röle çerçeve türleri. Kenar -> sahip: OPEN, COMMAND, CLOSE. Sahip -> kenar: DELIVER, END.
+    private static final int LINK_MAGIC = 0x43484c52; // "CHLR"
+    private static final byte OPEN = 1;     // oturum id, userId, roomId, kullanıcı adı, yetenekler
+    private static final byte COMMAND = 2;  // oturum id, komut (BinaryFrames opcode), argüman, metin
+    private static final byte CLOSE = 3;    // oturum id: istemci bağlantısı kapandı
+    private static final byte DELIVER = 4;  // mesaj (opcode, oda, sıra no, birleştirme anahtarı, satır) + alıcı oturum id'leri
+    private static final byte END = 5;      // oturum id, kapanma nedeni: sahip düğüm oturumu kapattı
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int MAX_BATCH = 1024;
+
+    private final List<Node> nodes;
+    private final Node self;
+    private final Routing routing;
+    private final int linkCapacity;
+    private final long configChecksum;
+    private final TreeMap<Long, Node> ring = new TreeMap<>();
+    private final Map<Integer, RelayLink> outgoing = new ConcurrentHashMap<>();
+    private final Lock connectLock = new ReentrantLock();
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    Cluster(List<Node> nodes, int selfIndex, Routing routing, int virtualNodes, int linkCapacity) {
+        this.nodes = List.copyOf(nodes);
+        this.self = nodes.get(selfIndex);
+        this.routing = routing;
+        this.linkCapacity = linkCapacity;
+        StringBuilder layout = new StringBuilder();
+        for (Node node : nodes) {
+            layout.append(node.clientAddress()).append(',');
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node.clientAddress() + "#" + i), node);
+            }
+        }
+        this.configChecksum = hash(layout + "/" + virtualNodes);
+    }
+
+    // Küme yapılandırılmamışsa null (tek düğüm)
+    static Cluster fromConfig() {
+        if (ServerConfig.CLUSTER_NODES.isBlank()) {
+            return null;
+        }
+        List<Node> nodes = new ArrayList<>();
+        int selfIndex = ServerConfig.CLUSTER_NODE_INDEX;
+        for (String entry : ServerConfig.CLUSTER_NODES.split(",")) {
+            String address = entry.trim();
+            int colon = address.lastIndexOf(':');
+            int clientPort = Integer.parseInt(address.substring(colon + 1));
+            nodes.add(new Node(nodes.size(), address.substring(0, colon), clientPort, clientPort + ServerConfig.CLUSTER_RELAY_PORT_OFFSET));
+            if (selfIndex < 0 && clientPort == ServerConfig.PORT) {
+                selfIndex = nodes.size() - 1;
+            }
+        }
+        if (selfIndex < 0 || selfIndex >= nodes.size()) {
+            throw new IllegalStateException("Bu düğüm chat.cluster.nodes içinde bulunamadı (chat.cluster.nodeIndex verin): " + ServerConfig.PORT);
+        }
+        Routing routing = "redirect".equalsIgnoreCase(ServerConfig.CLUSTER_ROUTING) ? Routing.REDIRECT : Routing.PROXY;
+        return new Cluster(nodes, selfIndex, routing, ServerConfig.CLUSTER_VIRTUAL_NODES, ServerConfig.CLUSTER_LINK_CAPACITY);
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    int selfIndex() {
+        return self.index;
+    }
+
+    Routing routing() {
+        return routing;
+    }
+
+    Node ownerOf(int roomId) {
+        Map.Entry<Long, Node> entry = ring.ceilingEntry(mix(roomId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    boolean isLocal(int roomId) {
+        return ownerOf(roomId) == self;
+    }
+
+    // Diğer düğümlerin açtığı röle bağlantılarını kabul eder
+    void start() throws IOException {
+        ServerSocket listener = new ServerSocket();
+        listener.setReuseAddress(true);
+        // Yalnızca düğüm listesindeki kendi adresimizde dinlenir (tüm arayüzlerde değil)
+        listener.bind(new InetSocketAddress(self.host, self.relayPort));
+        Thread acceptor = new Thread(() -> {
+            while (!listener.isClosed()) {
+                try {
+                    Socket socket = listener.accept();
+                    socket.setTcpNoDelay(true);
+                    new RelayLink(socket, null).start();
+                } catch (IOException e) {
+                    System.err.println("Röle bağlantısı kabul edilemedi: " + e.getMessage());
+                }
+            }
+        }, "role-dinleyici");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Küme: " + self + ", " + nodes.size() + " düğüm, yönlendirme: " + routing.name().toLowerCase()
+                + ", röle portu: " + self.relayPort);
+    }
+
+    // Kenar düğümde: istemci oturumunu sahip düğüme taşır. Sahip düğümden gelen mesajlar client'a yazılır;
+    // sahip düğüm oturumu kapatırsa (veya röle koparsa) onEnd nedeniyle çağrılır.
+    ProxySession open(Node owner, int userId, String username, int roomId, Set<String> capabilities,
+                      ClientConnection client, Consumer<ServerMetrics.DisconnectReason> onEnd) throws IOException {
+        RelayLink link = linkTo(owner);
+        ProxySession session = new ProxySession(link, sessionIds.incrementAndGet(), client, onEnd);
+        link.proxied.put(session.id, session);
+        link.enqueueFrame(out -> {
+            out.writeByte(OPEN);
+            out.writeLong(session.id);
+            out.writeInt(userId);
+            out.writeInt(roomId);
+            writeString(out, username);
+            writeString(out, String.join(" ", capabilities));
+        });
+        return session;
+    }
+
+    // Sahip düğüme açık röle bağlantısı; yoksa (veya kopmuşsa) yenisi açılır.
+    // Bağlanma virtual thread'de de yapılabildiği için synchronized yerine ReentrantLock kullanılır.
+    private RelayLink linkTo(Node owner) throws IOException {
+        RelayLink link = outgoing.get(owner.index);
+        if (link != null && !link.closed.get()) {
+            return link;
+        }
+        connectLock.lock();
+        try {
+            link = outgoing.get(owner.index);
+            if (link == null || link.closed.get()) {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(owner.host, owner.relayPort), CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                link = new RelayLink(socket, owner);
+                link.start();
+                outgoing.put(owner.index, link);
+                System.out.println("Röle bağlantısı açıldı: " + owner);
+            }
+            return link;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    // Kenar düğümde sahip düğüme taşınmış bir istemci oturumu
+    static final class ProxySession {
+
+        private final RelayLink link;
+        private final long id;
+        private final ClientConnection client;
+        private final Consumer<ServerMetrics.DisconnectReason> onEnd;
+
+        private ProxySession(RelayLink link, long id, ClientConnection client, Consumer<ServerMetrics.DisconnectReason> onEnd) {
+            this.link = link;
+            this.id = id;
+            this.client = client;
+            this.onEnd = onEnd;
+        }
+
+        // İstemcinin komutunu (sohbet, LEAVE_ROOM, HISTORY_BEFORE ...) sahip düğüme iletir; komutlar gönderildiği sırayla işlenir.
+        void forward(byte command, long argument, String text) {
+            link.enqueueFrame(out -> {
+                out.writeByte(COMMAND);
+                out.writeLong(id);
+                out.writeByte(command);
+                out.writeLong(argument);
+                writeString(out, text);
+            });
+        }
+
+        // İstemci bağlantısı kapandı; sahip düğüm üyeyi odadan çıkarır
+        void close() {
+            if (link.proxied.remove(id) != null) {
+                link.enqueueFrame(out -> {
+                    out.writeByte(CLOSE);
+                    out.writeLong(id);
+                });
+            }
+        }
+    }
+
+    // Sahip düğümde, başka bir düğüme bağlı istemcinin bağlantısı. Gönderilen mesajlar kodlanmadan röle kuyruğuna eklenir;
+    // kenar düğümdeki asıl bağlantı onları kendi protokolüne (metin/ikili, sıkıştırma) göre kodlar.
+    static final class RelayConnection implements ClientConnection {
+
+        private final RelayLink link;
+        private final long session;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private DemoServer.ClientHandler handler;
+
+        private RelayConnection(RelayLink link, long session) {
+            this.link = link;
+            this.session = session;
+        }
+
+        @Override
+        public void send(OutboundMessage message) {
+            if (!closed.get()) {
+                link.enqueue(new Delivery(message, session));
+            }
+        }
+
+        @Override
+        public void useBinaryFrames() {
+            // Çerçeveleme kenar düğümdeki bağlantıda yapılır
+        }
+
+        @Override
+        public void useCompression() {
+        }
+
+        // Sahip düğüm oturumu kapattı (ayrılma, oda kapandı, oda yok): kenar düğüme nedeniyle birlikte bildirilir
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                link.hosted.remove(session);
+                ServerMetrics.DisconnectReason reason = handler.disconnectReason();
+                link.enqueueFrame(out -> {
+                    out.writeByte(END);
+                    out.writeLong(session);
+                    out.writeByte(reason == null ? ServerMetrics.DisconnectReason.SERVER_ERROR.ordinal() : reason.ordinal());
+                });
+                handler.onDisconnected();
+            }
+        }
+
+        // Kenar düğüm oturumu kapattı veya röle koptu; karşıya bildirim gönderilmez
+        private void detach(ServerMetrics.DisconnectReason reason) {
+            if (closed.compareAndSet(false, true)) {
+                handler.markDisconnect(reason);
+                handler.onDisconnected();
+            }
+        }
+    }
+
+    // Röle kuyruğunda bir oturuma teslim edilecek mesaj; art arda aynı mesaj tek çerçevede birleşir
+    private static final class Delivery {
+
+        private final OutboundMessage message;
+        private final long session;
+
+        private Delivery(OutboundMessage message, long session) {
+            this.message = message;
+            this.session = session;
+        }
+    }
+
+    private interface FrameWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // İki düğüm arasındaki tek bir TCP bağlantısı. Okuma ve yazma ayrı thread'lerde yapılır; gönderen thread'ler (oda şeritleri)
+    // yalnızca kuyruğa ekler, sokete yazmayı beklemez.
+    private final class RelayLink {
+
+        private final Socket socket;
+        private final Node peer; // bizim açtığımız bağlantıda sahip düğüm; kabul edilen bağlantıda null
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(linkCapacity);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Bu bağlantı üzerinden sahip düğüme taşınmış oturumlarımız (kenar tarafı)
+        private final Map<Long, ProxySession> proxied = new ConcurrentHashMap<>();
+        // Bu bağlantı üzerinden bize taşınmış oturumlar (sahip tarafı)
+        private final Map<Long, RelayConnection> hosted = new ConcurrentHashMap<>();
+        private Thread reader;
+        private Thread writer;
+
+        RelayLink(Socket socket, Node peer) {
+            this.socket = socket;
+            this.peer = peer;
+        }
+
+        void start() throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            String name = peer != null ? "role-" + peer.index : "role-gelen-" + socket.getPort();
+            if (peer != null) {
+                out.writeInt(LINK_MAGIC);
+                out.writeInt(self.index);
+                out.writeLong(configChecksum);
+                out.flush();
+            }
+            reader = new Thread(() -> readLoop(in), name + "-okuma");
+            writer = new Thread(() -> writeLoop(out), name + "-yazma");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        void enqueueFrame(FrameWriter frame) {
+            enqueue(frame);
+        }
+
+        void enqueue(Object item) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(item)) {
+                System.err.println("Röle kuyruğu doldu, bağlantı kapatılıyor: " + describe());
+                fail(ServerMetrics.DisconnectReason.SLOW_CONSUMER);
+            }
+        }
+
+        private void writeLoop(DataOutputStream out) {
+            List<Object> batch = new ArrayList<>(MAX_BATCH);
+            List<Long> recipients = new ArrayList<>();
+            try {
+                while (!closed.get()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (int i = 0; i < batch.size(); i++) {
+                        Object item = batch.get(i);
+                        if (item instanceof FrameWriter frame) {
+                            frame.write(out);
+                            continue;
+                        }
+                        // Aynı mesajın art arda gelen teslimleri tek çerçevede birleştirilir
+                        OutboundMessage message = ((Delivery) item).message;
+                        recipients.add(((Delivery) item).session);
+                        while (i + 1 < batch.size() && batch.get(i + 1) instanceof Delivery next && next.message == message) {
+                            recipients.add(next.session);
+                            i++;
+                        }
+                        writeDelivery(out, message, recipients);
+                        recipients.clear();
+                    }
+                    batch.clear();
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    System.err.println("Röle yazma hatası (" + describe() + "): " + e.getMessage());
+                }
+                fail(ServerMetrics.DisconnectReason.IO_ERROR);
+            }
+        }
+
+        private void writeDelivery(DataOutputStream out, OutboundMessage message, List<Long> recipients) throws IOException {
+            out.writeByte(DELIVER);
+            // Birlikte gönderilmesi gereken satırlar (geçmiş sayfası) tek teslimde taşınır, kenar düğümde yine tek mesaj olur
+            List<OutboundMessage> parts = message.parts();
+            out.writeInt(parts.size());
+            for (OutboundMessage part : parts) {
+                out.writeByte(part.opcode());
+                out.writeBoolean(part.droppable());
+                out.writeInt(part.roomId());
+                out.writeLong(part.seq());
+                writeString(out, part.coalesceKey());
+                writeString(out, part.line());
+            }
+            out.writeInt(recipients.size());
+            for (long session : recipients) {
+                out.writeLong(session);
+            }
+        }
+
+        private void readLoop(DataInputStream in) {
+            try {
+                if (peer == null) {
+                    if (in.readInt() != LINK_MAGIC) {
+                        throw new IOException("geçersiz röle el sıkışması");
+                    }
+                    int peerIndex = in.readInt();
+                    if (in.readLong() != configChecksum) {
+                        // Halkalar farklıysa iki düğüm aynı odanın sahibi olduğunu düşünebilir; bu düğümle oturum taşınmaz
+                        throw new IOException("düğüm " + peerIndex + " farklı bir küme yapılandırmasıyla çalışıyor (chat.cluster.nodes)");
+                    }
+                }
+                while (true) {
+                    byte type = in.readByte();
+                    switch (type) {
+                        case OPEN -> onOpen(in.readLong(), in.readInt(), in.readInt(), readString(in), readString(in));
+                        case COMMAND -> onCommand(in.readLong(), in.readByte(), in.readLong(), readString(in));
+                        case CLOSE -> {
+                            RelayConnection connection = hosted.remove(in.readLong());
+                            if (connection != null) {
+                                connection.detach(ServerMetrics.DisconnectReason.CLIENT_CLOSED);
+                            }
+                        }
+                        case DELIVER -> onDeliver(in);
+                        case END -> {
+                            ProxySession session = proxied.remove(in.readLong());
+                            ServerMetrics.DisconnectReason reason = disconnectReason(in.readByte());
+                            if (session != null) {
+                                session.onEnd.accept(reason);
+                            }
+                        }
+                        default -> throw new IOException("bilinmeyen röle çerçevesi: " + type);
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    System.err.println("Röle bağlantısı koptu (" + describe() + "): " + e.getMessage());
+                }
+                fail(ServerMetrics.DisconnectReason.IO_ERROR);
+            }
+        }
+
+        // Karşı düğüm daha yeni bir sürümle çalışıyorsa bilinmeyen bir neden gönderebilir; bağlantının diğer oturumları etkilenmesin
+        private ServerMetrics.DisconnectReason disconnectReason(byte ordinal) {
+            ServerMetrics.DisconnectReason[] reasons = ServerMetrics.DisconnectReason.values();
+            if (ordinal < 0 || ordinal >= reasons.length) {
+                System.err.println("Röleden bilinmeyen bağlantı kesme nedeni (" + describe() + "): " + ordinal);
+                return ServerMetrics.DisconnectReason.SERVER_ERROR;
+            }
+            return reasons[ordinal];
+        }
+
+        // Sahip tarafı: taşınan oturum burada sıradan bir oturum olarak odaya katılır (el sıkışma kenar düğümde yapıldı)
+        private void onOpen(long session, int userId, int roomId, String username, String capabilities) {
+            RelayConnection connection = new RelayConnection(this, session);
+            DemoServer.ClientHandler handler = new DemoServer.ClientHandler(connection, userId, username, roomId,
+                    capabilities.isEmpty() ? Set.of() : Set.of(capabilities.split(" ")));
+            connection.handler = handler;
+            hosted.put(session, connection);
+            handler.scheduleJoin();
+        }
+
+        private void onCommand(long session, byte command, long argument, String text) {
+            RelayConnection connection = hosted.get(session);
+            if (connection != null) {
+                connection.handler.processCommand(command, argument, text);
+            }
+        }
+
+        // Kenar tarafı: mesaj bir kez çözülür, aynı nesne tüm yerel alıcılara verilir (kodlanmış baytları da paylaşılır)
+        private void onDeliver(DataInputStream in) throws IOException {
+            int partCount = in.readInt();
+            if (partCount < 1 || partCount > ServerConfig.HISTORY_PAGE_SIZE + 2) {
+                throw new IOException("geçersiz teslim parça sayısı: " + partCount);
+            }
+            List<OutboundMessage> parts = new ArrayList<>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                byte opcode = in.readByte();
+                boolean droppable = in.readBoolean();
+                int roomId = in.readInt();
+                long seq = in.readLong();
+                String coalesceKey = readString(in);
+                String line = readString(in);
+                parts.add(OutboundMessage.relayed(line, coalesceKey, opcode, roomId, seq, droppable));
+            }
+            OutboundMessage message = partCount == 1 ? parts.get(0) : OutboundMessage.sequence(parts);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ProxySession session = proxied.get(in.readLong());
+                if (session != null) {
+                    session.client.send(message);
+                }
+            }
+        }
+
+        // Bağlantıyı bir kez kapatır ve üzerindeki tüm oturumları sonlandırır
+        private void fail(ServerMetrics.DisconnectReason reason) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // zaten kapanıyor
+            }
+            if (writer != null) {
+                writer.interrupt();
+            }
+            if (peer != null) {
+                outgoing.remove(peer.index, this);
+            }
+            for (RelayConnection connection : hosted.values()) {
+                connection.detach(reason);
+            }
+            hosted.clear();
+            for (ProxySession session : proxied.values()) {
+                session.onEnd.accept(reason);
+            }
+            proxied.clear();
+        }
+
+        private String describe() {
+            return peer != null ? peer.toString() : socket.getRemoteSocketAddress().toString();
+        }
+    }
+
+    // null yazılabilen UTF-8 metin: [uzunluk int32, null için -1][baytlar]. writeUTF'nin 64KB sınırı yoktur;
+    // okurken uzunluk CLUSTER_MAX_STRING_BYTES ile sınırlanır (bozuk veya kötü niyetli uzunluk dev bir dizi ayırtmasın).
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > ServerConfig.CLUSTER_MAX_STRING_BYTES) {
+            throw new IOException("geçersiz röle metni uzunluğu: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Halka noktaları: FNV-1a (64 bit) ardından karıştırma; oda id'leri ardışık olduğu için doğrudan karıştırılır
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // SplitMix64 sonlandırıcısı
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
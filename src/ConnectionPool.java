@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sunucunun tüm veritabanı erişimleri için sınırlı boyutlu JDBC bağlantı havuzu.
+// Eskiden her mesajda DriverManager.getConnection ile MySQL'e yeni bir TCP + kimlik doğrulama el sıkışması yapılıyordu.
+// Havuz bağlantıları yeniden kullanır, her bağlantı için hazırlanmış ifadeleri (PreparedStatement) önbellekte tutar,
+// uzun süre boşta kalan bağlantıları kapatır ve bağlantı bekleme sürelerini sayar.
+final class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int statementCacheSize;
+
+    // Aynı anda dışarıda olabilecek en fazla bağlantı sayısı kadar izin. Havuz boyutunu sınırlar.
+    private final Semaphore permits;
+    // Boştaki bağlantılar. Başa eklenir ve baştan alınır (LIFO), böylece sık kullanılanlar sıcak kalır, eskiler sonda birikip kapatılır.
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    // Ölçümler (kilitsiz sayaçlar)
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder acquireTimeoutCount = new LongAdder();
+    private final LongAdder acquireWaitNanos = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+
+    ConnectionPool(String url, String user, String password, int maxSize, int minIdle, long acquireTimeoutMillis,
+            long idleTimeoutMillis, long validationIntervalMillis, int statementCacheSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-havuz-temizleyici");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    static ConnectionPool fromConfig() {
+        return new ConnectionPool(
+                ServerConfig.DB_URL,
+                ServerConfig.DB_USER,
+                ServerConfig.DB_PASSWORD,
+                ServerConfig.DB_POOL_SIZE,
+                ServerConfig.DB_POOL_MIN_IDLE,
+                ServerConfig.DB_ACQUIRE_TIMEOUT_MS,
+                ServerConfig.DB_IDLE_TIMEOUT_MS,
+                ServerConfig.DB_VALIDATION_INTERVAL_MS,
+                ServerConfig.DB_STATEMENT_CACHE_SIZE
+        );
+    }
+
+    // Havuzdan bir bağlantı ödünç alır. try-with-resources ile kullanılmalıdır, close() bağlantıyı havuza geri verir.
+    // Süre içinde boş bağlantı bulunamazsa SQLTimeoutException fırlatır.
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Bağlantı havuzu kapatıldı.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                acquireTimeoutCount.increment();
+                throw new SQLTimeoutException("Veritabanı bağlantısı " + acquireTimeoutMillis + " ms içinde alınamadı.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bağlantı beklenirken kesildi.", e);
+        } finally {
+            acquireWaitNanos.add(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    break;
+                }
+                validationFailureCount.increment();
+                pooled.closePhysically();
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+                createdCount.increment();
+            }
+            pooled.returned = false;
+            borrowCount.increment();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Ödünç alınan bağlantıyla yapılan iş. Bağlantı işten sonra havuza geri verilir.
+    @FunctionalInterface
+    interface SqlWork<T> {
+        T run(PooledConnection conn) throws SQLException;
+    }
+
+    // Bir bağlantı ödünç alır, işi çalıştırır ve bağlantıyı geri verir.
+    // İş bağlantı hatasıyla biterse bağlantı havuza geri konmaz, kapatılır; sonraki ödünç alan kopuk bağlantıyla karşılaşmaz.
+    <T> T execute(SqlWork<T> work) throws SQLException {
+        try (PooledConnection conn = borrow()) {
+            try {
+                return work.run(conn);
+            } catch (SQLException e) {
+                if (isConnectionFailure(e)) {
+                    conn.invalidate();
+                }
+                throw e;
+            }
+        }
+    }
+
+    // SQLSTATE sınıfı 08 (bağlantı hatası) veya altta yatan ağ/G-Ç hatası
+    static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof IOException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException || t instanceof SQLTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException sqlException && sqlException.getSQLState() != null && sqlException.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Uzun süre boşta kalmış bağlantılar kullanılmadan önce doğrulanır (sunucu tarafında zaman aşımına uğramış olabilir).
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedMillis < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (pooled.broken || closed) {
+                pooled.closePhysically();
+                return;
+            }
+            // Bir işlem (transaction) yarım kaldıysa bağlantıyı temiz haliyle geri koy
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsedMillis = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            pooled.closePhysically();
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Boşta kalma süresi dolan bağlantıları kapatır, en az minIdle bağlantıyı açık bırakır.
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        int scanned = idle.size();
+        for (int i = 0; i < scanned && idle.size() > minIdle; i++) {
+            PooledConnection oldest = idle.pollLast();
+            if (oldest == null) {
+                return;
+            }
+            if (now - oldest.lastUsedMillis >= idleTimeoutMillis) {
+                evictedCount.increment();
+                oldest.closePhysically();
+            } else {
+                idle.offerLast(oldest);
+                return;
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysically();
+        }
+    }
+
+    int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    int getIdleConnections() {
+        return idle.size();
+    }
+
+    long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    long getAcquireTimeoutCount() {
+        return acquireTimeoutCount.sum();
+    }
+
+    // Bağlantı başına ortalama bekleme süresi (mikrosaniye)
+    long getAverageAcquireWaitMicros() {
+        long borrows = borrowCount.sum() + acquireTimeoutCount.sum();
+        return borrows == 0 ? 0 : acquireWaitNanos.sum() / borrows / 1000;
+    }
+
+    long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    long getValidationFailureCount() {
+        return validationFailureCount.sum();
+    }
+
+    // Havuzdan ödünç alınmış bağlantı. Hazırlanmış ifadeler bağlantıyla birlikte önbellekte yaşar, kullanıcı tarafından kapatılmaz.
+    final class PooledConnection implements AutoCloseable {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private long lastUsedMillis = System.currentTimeMillis();
+        private boolean broken;
+        // Havuza geri verildi mi; ikinci close() izni ikinci kez bırakmamalı
+        private boolean returned;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            // Erişim sırasına göre LRU önbellek. Sınır aşılırsa en eski ifade kapatılır.
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Connection connection() {
+            return connection;
+        }
+
+        // Aynı SQL için daha önce hazırlanmış ifadeyi döner. İfade kapatılmamalıdır; sonuç kümeleri (ResultSet) kapatılmalıdır.
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        // Bağlantı hatalı bir durumda kaldıysa (örneğin ağ hatası) havuza geri konmaz.
+        void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            release(this);
+        }
+
+        private void closePhysically() {
+            for (Iterator<PreparedStatement> it = statements.values().iterator(); it.hasNext();) {
+                closeQuietly(it.next());
+                it.remove();
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Veritabanı bağlantısı kapatılamadı: " + e.getMessage());
+            }
+        }
+
+        private void closeQuietly(Statement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
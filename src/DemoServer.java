@@ -6,13 +6,16 @@ Synchronized ile korunan bir blok veya metod bir lock alır ve bu lock başka bi
 
 import java.io.*; // PrintWriter , BufferedReader, InputStreamReader, IOException kullanımı için. İstemciyle metin tabanlı iletişim.
 import java.net.*; // Java network işlemleri için. ServerSocket, Socket
+import java.nio.ByteBuffer;
 import java.sql.*; // JDBC (Java Database Connectivity) API'nin bir parçası. PreparedStatement (SQL injectiona karşı)
 import java.util.*; // Map, List, ArrayList, ConcurrentHashMap (aynı anda birden fazla thread tarafından kullanılabilir) veri yapıları için.
 import java.util.concurrent.*; // Multithreading sağlar. ExecutorService, ThreadPoolExecutor, BlockingQueue, LinkedBlockingQueue, TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
-// ReentrantLock (iş parçacığı senkronizasyonu, erişim denetimi sağlar)
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class DemoServer {
 
@@ -26,14 +29,18 @@ public class DemoServer {
     // ConcurrentSkipListMap: Sıralama özelliği gereksizdir ve performans kaybına yol açar.
     // Set ve Queue: İstemcilerin bir sırasını veya benzersizliğini sağlamada kullanılabilir ama oda ve istemcilerin ilişkisi için uygun değildir.
     // ConcurrentHashMap kendiliğinden thread-safe olduğu için ayrıca kilit mekanizmasına gerek kalmayabilir.
-    private static final Map<Integer, List<ClientHandler>> rooms = new ConcurrentHashMap<>();
+    // Her oda kendi üyelik kilidini ve kilitsiz okunan üye listesini taşır (bkz. Room); farklı odalardaki işlemler birbirini beklemez.
+    // Haritada yalnızca katılınmış odalar bulunur: oda ilk katılmada eklenir, boşalıp süresi dolunca çıkarılır (evictIdleRooms).
+    private static final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
 
-    // Havuzda aynı anda çalışabilecek maksimum iş parçacığı sayısını belirtir.
-    private static final int THREAD_POOL_SIZE = 10;
+    // Havuzda aynı anda çalışabilecek maksimum iş parçacığı sayısını belirtir. (chat.workers, varsayılan: en az 10, en az çekirdek sayısı)
+    private static final int THREAD_POOL_SIZE = ServerConfig.WORKER_THREADS;
     // Kuyruk, iş parçacığı havuzu tarafından işlenmesi gereken görevleri düzenli bir şekilde sıraya koyar.
     // Sonsuz Kuyruk: Kuyruğun boyutu sınırlı olmadığı için görevler dolmaz ve kaybolmaz. Bu, görevlerin güvenle işlenmesini sağlar.
     // ArrayBlockingQueue: Sabit boyutlu olduğu için uygun değil.
     // PriorityBlockingQueue: Öncelik gerektiren bir işleme ihtiyacımız yok.
+    // Kuyruğa tek tek görevler değil oda şeritleri girer (bir şerit aynı anda en fazla bir kez), yani derinliği oda sayısıyla sınırlıdır.
+    // Şeritlerdeki istemci komutlarının toplamı ise giriş denetimiyle (pendingCommands, TokenBucket) sınırlanır.
     private static final BlockingQueue<Runnable> messageQueue = new LinkedBlockingQueue<>();
     // Core ve Maximum iş parçacığı sayısı 10.
     // Core iş parçacıkları hiçbir zaman sonlandırılmaz. (0L)
@@ -42,7 +49,7 @@ public class DemoServer {
     // Yeni Bir İş Parçacığı Her Görev İçin Oluşturulsaydı: Yoğun yük altında sistem kaynaklarının tükenmesine yol açar.
     // newFixedThreadPool(int n) olsaydı: kuyruk türü ve boyutu ayarlanamazdı
     // ForkJoinPool olsaydı: divide-and-conquer) görevler için uygundur.
-    private static final ExecutorService threadPool = new ThreadPoolExecutor(
+    private static final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
             THREAD_POOL_SIZE,
             THREAD_POOL_SIZE,
             0L,
@@ -50,31 +57,345 @@ public class DemoServer {
             messageQueue
     );
 
-    // Lock yapısı
-    private static final Lock lock = new ReentrantLock();
+    // Oda başına sıralı şeritler. Bir odanın mesajları sırayla işlenir, farklı odalar threadPool üzerinde paralel çalışır.
+    // Önceden her satır havuza bağımsız bir görev olarak veriliyordu; aynı kullanıcının art arda iki mesajı ters sırada kaydedilip yayınlanabiliyordu.
+    private static final RoomLanes roomLanes = new RoomLanes(threadPool, ServerConfig.LANE_QUANTUM);
 
-    // Veri tabanından odaları çek ve rooms değişkenine ekle
-    public static void loadRoomsFromDatabase() {
-        String query = "SELECT id FROM rooms";
-        try (Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/chatapp_db", "root", ""); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(query)) {
-            while (resultSet.next()) {
-                int roomId = resultSet.getInt("id");
-                rooms.put(roomId, new ArrayList<>());
+    // Şeritlere verilmiş, henüz çalışmamış istemci komutları. Yarıyı aşınca okuyucular duraklar, sınıra ulaşınca komutlar reddedilir.
+    private static final AtomicInteger pendingCommands = new AtomicInteger();
+    private static final int PAUSE_READING_AT = ServerConfig.INGEST_MAX_PENDING / 2;
+    // Sunucu doluyken okuyucunun tekrar denemeden önce beklediği süre
+    private static final long BACKPRESSURE_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // İstemci thread'lerini üreten yapı. Bağlantı modu ServerConfig.CONNECTION_MODE ile seçilir.
+    private static final Thread.Builder clientThreadBuilder = ServerConfig.isVirtualThreadMode()
+            ? Thread.ofVirtual().name("istemci-v-", 0)
+            : Thread.ofPlatform().name("istemci-", 0);
+
+    // Sunucunun tüm veritabanı erişimleri bu havuzdan ödünç alınan bağlantılarla yapılır.
+    // Her mesajda yeni bir bağlantı (TCP + kimlik doğrulama) açmak yerine açık bağlantılar ve hazırlanmış ifadeler yeniden kullanılır.
+    private static final ConnectionPool dbPool = ConnectionPool.fromConfig();
+
+    // Mesajların ve oda üst bilgilerinin saklandığı motor (-Dchat.store=jdbc|memory). Bellek motorunda veritabanı hiç kullanılmaz.
+    private static final MessageStore messageStore = MessageStore.fromConfig(dbPool);
+
+    // Mesajlar yayınlanır ve bu yazıcının günlüğüne eklenir; yazıcı bunları arka planda batch'ler halinde depoya yazar.
+    private static final MessageWriter messageWriter = MessageWriter.fromConfig(messageStore);
+
+    // Saklama süresi dolan mesajların yerel diskteki arşivi; sıcak tablonun gerisindeki geçmiş sayfaları buradan okunur
+    private static final MessageArchive messageArchive = MessageArchive.fromConfig();
+
+    // Kapatılan odaların mesajlarını ve kendisini arka planda, parça parça siler
+    private static final RoomReaper roomReaper = RoomReaper.fromConfig(messageStore, messageWriter, messageArchive);
+
+    // userId -> username önbelleği. Geçmişteki gönderen adları buradan çözülür; bir kez çözülen gönderen için users tablosuna gidilmez.
+    private static final UserDirectory userDirectory = UserDirectory.fromConfig(dbPool);
+
+    // Odaların üst bilgileri (ad, sahip, şifre özeti). Sahiplik ve katılma kontrolleri veritabanına gitmeden buradan yapılır.
+    private static final RoomDirectory roomDirectory = new RoomDirectory(messageStore);
+
+    // Mesaj id'leri sunucu tarafından atanır (başlangıçta veritabanındaki en büyük id'den devam eder).
+    // Mesaj arkadan yazıldığı için, veritabanına düşmeden önce de geçmiş tamponunda ve imleçlerde gerçek id'siyle kullanılabilir.
+    private static final AtomicLong messageIds = new AtomicLong();
+
+    // Küme modunda odaların dağıtıldığı düğümler ve röle bağlantıları; tek düğümde null
+    private static final Cluster cluster = Cluster.fromConfig();
+
+    // Süresi dolan mesajları arşive taşıyan görev. Küme modunda yalnızca bu düğümün odaları.
+    private static final MessageRetention messageRetention = MessageRetention.fromConfig(messageStore, messageArchive,
+            roomId -> cluster == null || cluster.isLocal(roomId));
+
+    // Odaların son mesaj tamponlarını, uzun süre etkinlik olmayan odalarda boşaltan bakım görevi
+    private static final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bakim");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Son mesaj id'sini depodan okur. Okunamazsa sunucu başlatılmaz: 0'dan başlayan dizi kayıtlı mesajların id'leriyle çakışırdı.
+    public static void loadMessageIdSequence() {
+        try {
+            // Arşive taşınan mesajların id'leri de sayılır; sıcak tablo boşalsa bile id'ler yeniden kullanılmaz
+            long maxId = Math.max(messageStore.maxMessageId(), messageArchive.maxMessageId());
+            if (cluster != null) {
+                // Düğümler ortak depoya yazarken id'ler çakışmasın: her düğüm yalnızca (id % düğüm sayısı) == kendi sırası olan id'leri üretir
+                maxId = maxId - Math.floorMod(maxId, cluster.size()) + cluster.selfIndex();
+            }
+            messageIds.set(maxId);
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Son mesaj id'si okunamadı, sunucu başlatılamıyor: " + e.getMessage(), e);
+        }
+    }
+
+    static long nextMessageId() {
+        return cluster == null ? messageIds.incrementAndGet() : messageIds.addAndGet(cluster.size());
+    }
+
+    // Belirli bir süredir etkinlik olmayan odaların son mesaj tamponlarını boşaltır; bir sonraki katılmada yeniden doldurulurlar.
+    private static void evictIdleRecentMessages() {
+        long now = System.currentTimeMillis();
+        for (Room room : rooms.values()) {
+            if (room.recent().idleMillis(now) > ServerConfig.RECENT_IDLE_EVICT_MS && room.recent().isPrimed()) {
+                room.recent().clear();
             }
-            System.out.println("Oda bilgileri yüklendi.");
-        } catch (SQLException e) {
-            System.err.println("Veritabanından oda bilgileri yüklenirken bir hata oluştu.");
-            e.printStackTrace();
+        }
+    }
+
+    // Boşalalı idleMillis'ten uzun süre geçmiş odaları bellekten çıkarır: oda nesnesi (son mesaj tamponuyla), şeridi ve üst bilgisi.
+    // Oda nesnesi kalmayan odaların üst bilgisi de atılır (ör. katılması bir hata nedeniyle yarıda kalan oda).
+    // Çıkarılan odaya yeniden katılınırsa ilk katılmadaki gibi depodan doğrulanıp baştan oluşturulur.
+    static int evictIdleRooms(long idleMillis) {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Room room : rooms.values()) {
+            if (room.retireIfIdle(now, idleMillis)) {
+                rooms.remove(room.id(), room);
+                roomLanes.retire(room.id());
+                evicted++;
+            }
+        }
+        roomDirectory.evictUnused(rooms::containsKey);
+        return evicted;
+    }
+
+    private static void startMaintenance() {
+        long period = Math.max(1000L, ServerConfig.RECENT_IDLE_EVICT_MS / 4);
+        maintenance.scheduleAtFixedRate(DemoServer::evictIdleRecentMessages, period, period, TimeUnit.MILLISECONDS);
+        long roomPeriod = Math.max(1000L, ServerConfig.ROOM_IDLE_EVICT_MS / 4);
+        maintenance.scheduleAtFixedRate(() -> evictIdleRooms(ServerConfig.ROOM_IDLE_EVICT_MS), roomPeriod, roomPeriod, TimeUnit.MILLISECONDS);
+        // DISCONNECT politikasında yeni mesaj gelmese de gecikmesi maxLag'i aşan istemciler kesilir
+        if (OutboundQueue.SlowConsumerPolicy.fromConfig(ServerConfig.OUTBOUND_POLICY) == OutboundQueue.SlowConsumerPolicy.DISCONNECT) {
+            long lagPeriod = Math.max(100L, ServerConfig.OUTBOUND_MAX_LAG_MS / 2);
+            maintenance.scheduleAtFixedRate(OutboundQueue::disconnectLagging, lagPeriod, lagPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Her iki taşıma modunda da bağlantı kabul edilmeden önce çalışır.
+    // Odalar burada yüklenmez; oda nesnesi ve üst bilgisi ilk katılmada oluşturulur (joinRoom), açılış süresi oda sayısından bağımsızdır.
+    private static void initializeServerState() {
+        loadMessageIdSequence();
+        startMaintenance();
+        roomReaper.start();
+        messageRetention.start();
+        if (ServerConfig.METRICS_JMX_ENABLED) {
+            ServerMetrics.register(new ServerStats());
+        }
+        if (cluster != null) {
+            try {
+                cluster.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Röle portu dinlenemedi", e);
+            }
+        }
+    }
+
+    // JMX'teki chatapp:type=Server görünümü. Değerler okunduğu anda sunucunun kendi yapılarından hesaplanır.
+    static final class ServerStats implements ServerStatsMXBean {
+
+        @Override
+        public long getConnectedClients() {
+            return ServerMetrics.getConnectedClients();
+        }
+
+        @Override
+        public int getRoomCount() {
+            return rooms.size();
+        }
+
+        @Override
+        public Map<Integer, Integer> getMembersPerRoom() {
+            Map<Integer, Integer> members = new TreeMap<>();
+            for (Room room : rooms.values()) {
+                members.put(room.id(), room.members().size());
+            }
+            return members;
+        }
+
+        @Override
+        public Map<String, Long> getDisconnectReasons() {
+            return ServerMetrics.getDisconnectReasons();
+        }
+
+        @Override
+        public int getWorkerQueueDepth() {
+            return messageQueue.size();
+        }
+
+        @Override
+        public int getActiveWorkers() {
+            return threadPool.getActiveCount();
+        }
+
+        @Override
+        public int getLaneCount() {
+            return roomLanes.getLaneCount();
+        }
+
+        @Override
+        public int getPendingCommands() {
+            return pendingCommands.get();
+        }
+
+        @Override
+        public long getIngestThrottledCount() {
+            return ServerMetrics.getIngestThrottled();
+        }
+
+        @Override
+        public long getIngestRejectedCount() {
+            return ServerMetrics.getIngestRejected();
+        }
+
+        @Override
+        public long getOutboundQueueDepth() {
+            return OutboundQueue.getTotalDepth();
+        }
+
+        @Override
+        public long getOutboundDroppedCount() {
+            return OutboundQueue.getDroppedCount();
+        }
+
+        @Override
+        public long getOutboundCoalescedCount() {
+            return OutboundQueue.getCoalescedCount();
+        }
+
+        @Override
+        public long getBytesIn() {
+            return ServerMetrics.getBytesIn();
+        }
+
+        @Override
+        public long getBytesOut() {
+            return ServerMetrics.getBytesOut();
+        }
+
+        @Override
+        public long getCompressionRawBytes() {
+            return FrameCompressor.getRawBytes();
+        }
+
+        @Override
+        public long getCompressionCompressedBytes() {
+            return FrameCompressor.getCompressedBytes();
+        }
+
+        @Override
+        public long getMessagesAppended() {
+            return messageWriter.getAppendedCount();
+        }
+
+        @Override
+        public long getMessagesCommitted() {
+            return messageWriter.getCommittedCount();
+        }
+
+        @Override
+        public long getMessageBatches() {
+            return messageWriter.getBatchCount();
+        }
+
+        @Override
+        public long getMessagesFailed() {
+            return messageWriter.getFailedCount();
+        }
+
+        @Override
+        public long getMessageWriteRetries() {
+            return messageWriter.getRetryCount();
+        }
+
+        @Override
+        public long getMessagesArchived() {
+            return messageArchive.getArchivedCount();
+        }
+
+        @Override
+        public long getArchiveReads() {
+            return messageArchive.getReadCount();
+        }
+
+        @Override
+        public long getRetentionLastRunMillis() {
+            return messageRetention.getLastRunMillis();
+        }
+
+        @Override
+        public int getRoomDeletesPending() {
+            return roomReaper.getPendingCount();
+        }
+
+        @Override
+        public long getRoomsPurged() {
+            return roomReaper.getRoomsPurged();
+        }
+
+        @Override
+        public long getRoomMessagesPurged() {
+            return roomReaper.getMessagesPurged();
+        }
+
+        @Override
+        public int getDbActiveConnections() {
+            return dbPool.getActiveConnections();
+        }
+
+        @Override
+        public long getDbAcquireTimeouts() {
+            return dbPool.getAcquireTimeoutCount();
+        }
+
+        @Override
+        public long getDbAverageAcquireWaitMicros() {
+            return dbPool.getAverageAcquireWaitMicros();
+        }
+
+        @Override
+        public long getUserCacheHits() {
+            return userDirectory.getHitCount();
+        }
+
+        @Override
+        public long getUserCacheMisses() {
+            return userDirectory.getMissCount();
+        }
+
+        @Override
+        public long getRoomDirectoryHits() {
+            return roomDirectory.getHitCount();
+        }
+
+        @Override
+        public long getRoomDirectoryMisses() {
+            return roomDirectory.getMissCount();
         }
     }
 
     public static void main(String[] args) {
-        final int port = 9091;
+        final int port = ServerConfig.PORT;
+
+        // Sunucu kapanırken günlükte bekleyen mesajlar veritabanına yazılır, ardından havuz kapatılır.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            messageWriter.shutdown(ServerConfig.PERSIST_SHUTDOWN_TIMEOUT_MS);
+            dbPool.close();
+        }, "kapanis"));
+
+        // "nio" seçilirse tüm bağlantılar az sayıdaki selector thread'i tarafından yönetilir.
+        if (ServerConfig.isNioTransport()) {
+            initializeServerState();
+            try {
+                new NioTransport(port, ServerConfig.NIO_EVENT_LOOPS).run();
+            } catch (IOException e) {
+                System.err.println("Port dinlenirken bir hata oluştu: " + e.getMessage());
+            }
+            return;
+        }
 
         try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Server " + port + " üzerinden başlatıldı.");
+            System.out.println("Server " + port + " üzerinden başlatıldı. Bağlantı modu: " + (ServerConfig.isVirtualThreadMode() ? "virtual" : "platform"));
 
-            loadRoomsFromDatabase();
+            initializeServerState();
 
             while (true) {
                 // Her gelen client için yeni bir socket oluştur
@@ -83,274 +404,680 @@ public class DemoServer {
                 // Bu iş parçacığı, istemciden gelen mesajı okur ve hangi işlemin yapılması gerektiğini belirler.
                 // Ancak bu iş parçacıkları doğrudan ağır işlemleri (örneğin mesajların veritabanına kaydedilmesi, tüm kullanıcılara iletilmesi) yapmaz.
                 // İstemci bağlantısını yöneten ClientHandler iş parçacıkları, ağır iş yüklerini doğrudan yapmaz. Bunun yerine, bu işleri ThreadPoolExecutor'a devreder.
-                new Thread(new ClientHandler(clientSocket)).start();
+                // Platform modunda her istemci bir işletim sistemi thread'i, virtual modda ise bir virtual thread kullanır.
+                clientThreadBuilder.start(new ClientHandler(clientSocket));
             }
         } catch (IOException e) {
             System.err.println("Port dinlenirken bir hata oluştu: " + e.getMessage());
         }
     }
 
-    private static class ClientHandler implements Runnable {
+    // Oda ve protokol mantığını yürüten istemci oturumu.
+    // Engelleyen modda kendi thread'inde run() ile soketi okur. NIO modunda satırlar onLine(), çerçeveler onFrame() ile event loop'tan gelir.
+    static class ClientHandler implements Runnable {
 
         private final Socket clientSocket;
-        private PrintWriter out; // giden mesajlar
-        private BufferedReader in; // gelen mesajlar
+        private ClientConnection connection; // istemciye giden yol (soket veya NIO kanalı)
+        private int handshakeStep; // el sıkışmada okunan satır sayısı (userId, username, roomId)
+        private Set<String> capabilities = Set.of(); // el sıkışmadan önce HELLO satırıyla bildirilen istemci yetenekleri
         private int userId;
         private String username;
         private int roomId;
+        private volatile Room joinedRoom; // katıldığı oda nesnesi (katılmadan önce null)
+        private final AtomicBoolean left = new AtomicBoolean(); // odadan çıkarıldıysa true (LEAVE_ROOM veya bağlantı kopması)
+        // Bağlantının kapanma nedeni (ölçümler için); ilk belirlenen neden geçerlidir
+        private final AtomicReference<ServerMetrics.DisconnectReason> disconnectReason = new AtomicReference<>();
+        // Küme modunda oda başka düğümdeyse oturum oraya taşınır; komutlar röle üzerinden iletilir (bkz. Cluster)
+        private volatile Cluster.ProxySession proxy;
+        // Katılma sırasında şeride girmiş komutlar iletildikten sonra true olur; sonraki komutlar şeridi atlayıp doğrudan iletilir
+        private volatile boolean proxyReady;
+        // Bu bağlantının komut hızı bütçesi (yalnızca okuyucu thread'i kullanır)
+        private final TokenBucket ingestBudget = TokenBucket.fromConfig();
 
         public ClientHandler(Socket socket) {
             this.clientSocket = socket;
+            ServerMetrics.clientConnected();
+        }
+
+        // NIO motoru için: bağlantı hazır, satırlar onLine() ile verilecek.
+        ClientHandler(ClientConnection connection) {
+            this.clientSocket = null;
+            this.connection = connection;
+            ServerMetrics.clientConnected();
+        }
+
+        // El sıkışması başka yerde tamamlanmış oturum (ölçümler gibi sunucu dışı sürücüler için). Katılma enterRoom() ile yapılır.
+        ClientHandler(ClientConnection connection, int userId, String username, int roomId, Set<String> capabilities) {
+            this(connection);
+            this.capabilities = capabilities;
+            this.userId = userId;
+            this.username = username;
+            this.roomId = roomId;
+            this.handshakeStep = 3;
         }
 
         @Override
         public void run() {
             try {
                 initializeConnection();
-                joinRoom();
-                handleClientMessages();
-            } catch (IOException | SQLException e) {
+                // Katılma odanın şeridinde yapılır; bu thread bitmesini bekleyip komutları okumaya geçer
+                if (scheduleJoin().join()) {
+                    handleClientMessages();
+                }
+            } catch (EOFException e) {
+                System.err.println("Bağlantı hatası: " + e.getMessage());
+                markDisconnect(ServerMetrics.DisconnectReason.CLIENT_CLOSED);
+            } catch (IOException e) {
+                System.err.println("Bağlantı hatası: " + e.getMessage());
+                markDisconnect(ServerMetrics.DisconnectReason.IO_ERROR);
+            } catch (SQLException e) {
                 System.err.println("Bağlantı hatası: " + e.getMessage());
+                markDisconnect(ServerMetrics.DisconnectReason.SERVER_ERROR);
+            } catch (NumberFormatException e) {
+                System.err.println("Bağlantı hatası: " + e.getMessage());
+                markDisconnect(ServerMetrics.DisconnectReason.PROTOCOL_ERROR);
             } finally {
                 closeConnection();
+                onDisconnected();
             }
         }
 
         private void initializeConnection() throws IOException {
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            SocketConnection socketConnection = new SocketConnection(clientSocket,
+                    () -> markDisconnect(ServerMetrics.DisconnectReason.SLOW_CONSUMER));
+            connection = socketConnection;
 
-            // İstemciden kullanıcı bilgilerini al
-            userId = Integer.parseInt(in.readLine());
-            username = in.readLine();
-            roomId = Integer.parseInt(in.readLine());
+            // İstemciden kullanıcı bilgilerini al (ikili protokolde tek bir JOIN çerçevesi)
+            while (handshakeStep < 3) {
+                if (socketConnection.isBinary()) {
+                    if (!socketConnection.readFrame(this::onFrame)) {
+                        throw new EOFException("El sıkışma tamamlanmadan bağlantı kapandı.");
+                    }
+                    continue;
+                }
+                String line = socketConnection.readLine();
+                if (line == null) {
+                    throw new EOFException("El sıkışma tamamlanmadan bağlantı kapandı.");
+                }
+                acceptHandshakeLine(line);
+            }
         }
 
-        private void joinRoom() throws SQLException {
-            // rooms değişkenini kilitleyen yapı
-            synchronized (rooms) {
-                // roomId yoksa ekle, varsa değiştirme
-                rooms.putIfAbsent(roomId, new ArrayList<>());
-                rooms.get(roomId).add(this);
+        // El sıkışma satırlarını sırasıyla işler: [HELLO <yetenekler>], userId, username, roomId
+        // Yeni istemciler ilk satırda desteklediği yetenekleri bildirir (örneğin "HELLO delta"); eski istemciler doğrudan userId gönderir.
+        private void acceptHandshakeLine(String line) {
+            if (handshakeStep == 0 && line.startsWith("HELLO")) {
+                capabilities = Set.of(line.substring(5).trim().split("\\s+"));
+                // "binary": bu satırdan sonra her iki yönde uzunluk önekli çerçeveler kullanılır
+                if (capabilities.contains("binary")) {
+                    connection.useBinaryFrames();
+                    // "deflate": büyük çerçeve grupları (geçmiş, yoğun oda) sıkıştırılır; yalnızca çerçeveli protokolde desteklenir
+                    if (capabilities.contains("deflate") && ServerConfig.COMPRESSION_ENABLED) {
+                        connection.useCompression();
+                    }
+                }
+                return;
+            }
+            switch (handshakeStep) {
+                case 0 -> userId = Integer.parseInt(line.trim());
+                case 1 -> username = line;
+                default -> roomId = Integer.parseInt(line.trim());
             }
+            handshakeStep++;
+        }
+
+        // NIO event loop'undan gelen her satır. Event loop thread'i bloklanmamalı,
+        // bu yüzden veritabanına dokunan odaya katılma işlemi de havuza devredilir.
+        void onLine(String line) {
+            if (handshakeStep < 3) {
+                try {
+                    acceptHandshakeLine(line);
+                } catch (NumberFormatException e) {
+                    System.err.println("Geçersiz el sıkışma: " + e.getMessage());
+                    markDisconnect(ServerMetrics.DisconnectReason.PROTOCOL_ERROR);
+                    closeConnection();
+                    return;
+                }
+                if (handshakeStep == 3) {
+                    scheduleJoin();
+                }
+                return;
+            }
+            processMessage(line);
+        }
+
+        // İkili protokolde gelen her çerçeve (NIO event loop'undan veya engelleyen okuyucudan).
+        // Komut opcode'dan okunur; yük yalnızca sohbet mesajı ve kullanıcı adı için String'e çevrilir.
+        boolean onFrame(byte opcode, int frameRoomId, long seq, ByteBuffer payload) {
+            if (handshakeStep < 3) {
+                if (opcode != BinaryFrames.JOIN || payload.remaining() < 4) {
+                    System.err.println("Geçersiz el sıkışma çerçevesi: " + opcode);
+                    markDisconnect(ServerMetrics.DisconnectReason.PROTOCOL_ERROR);
+                    closeConnection();
+                    return false;
+                }
+                userId = payload.getInt();
+                username = BinaryFrames.text(payload);
+                roomId = frameRoomId;
+                handshakeStep = 3;
+                if (clientSocket == null) {
+                    scheduleJoin();
+                }
+                return true;
+            }
+            if (frameRoomId != roomId) {
+                System.err.println("Başka odaya ait çerçeve yok sayıldı: " + frameRoomId);
+                return true;
+            }
+            switch (opcode) {
+                case BinaryFrames.CHAT -> processCommand(opcode, 0, BinaryFrames.text(payload));
+                case BinaryFrames.LEAVE_ROOM, BinaryFrames.CLOSE_ROOM, BinaryFrames.PARTICIPANTS_SYNC -> processCommand(opcode, 0, null);
+                case BinaryFrames.HISTORY_BEFORE -> processCommand(opcode, seq, null);
+                default -> System.err.println("Bilinmeyen çerçeve türü: " + opcode);
+            }
+            return true;
+        }
 
+        // Katılma her iki modda da odanın şeridinde çalışır; böylece aynı odadaki ayrılma, kapatma ve boşta kalan odanın
+        // kaldırılmasıyla yarışmaz ve ardından gelen mesajlar katılmadan önce işlenmez.
+        // Dönen future katılma bitince tamamlanır: odaya girildiyse true, bağlantı kapatıldıysa false.
+        CompletableFuture<Boolean> scheduleJoin() {
+            CompletableFuture<Boolean> joined = new CompletableFuture<>();
+            roomLanes.execute(roomId, () -> {
+                try {
+                    joined.complete(joinRoom());
+                } catch (SQLException | IOException e) {
+                    System.err.println("Bağlantı hatası: " + e.getMessage());
+                    markDisconnect(ServerMetrics.DisconnectReason.SERVER_ERROR);
+                    closeConnection();
+                } finally {
+                    // Beklenmeyen hatada da bekleyen okuyucu thread'i serbest kalsın
+                    joined.complete(false);
+                }
+            });
+            return joined;
+        }
+
+        // Odaya katılır. Oda yoksa istemciye ROOM_NOT_FOUND gönderilir, bağlantı kapatılır ve false döner.
+        private boolean joinRoom() throws SQLException, IOException {
+            // Röle ile gelen oturum (connection bir RelayConnection) her zaman burada katılır, tekrar yönlendirilmez
+            if (cluster != null && !cluster.isLocal(roomId) && !(connection instanceof Cluster.RelayConnection)) {
+                return joinRemoteRoom();
+            }
+            RoomDirectory.RoomInfo roomInfo = roomDirectory.get(roomId);
+            if (roomInfo == null) {
+                send("ROOM_NOT_FOUND");
+                markDisconnect(ServerMetrics.DisconnectReason.ROOM_NOT_FOUND);
+                closeConnection();
+                if (!rooms.containsKey(roomId)) {
+                    roomLanes.retire(roomId);
+                }
+                return false;
+            }
+
+            // Kullanıcının adı değiştiyse önbellekteki eski ad geçersiz kılınır
+            userDirectory.observe(userId, username);
+
+            long version = enterRoom();
+
+            // İstemci oda sahibini buradan öğrenir (kendi veritabanı sorgusunu yapmaz)
+            send("ROOM_OWNER " + roomInfo.creatorId());
             // Odadaki geçmiş mesajları kullanıcıya gönder
             sendRoomMessagesToClient();
-            notifyRoomMembers("[+] " + username + " odaya katıldı.");
-            updateParticipantsList();
+            announceJoin(version);
+            return true;
         }
 
-        private void handleClientMessages() throws IOException, SQLException {
-            String message;
-
-            while ((message = in.readLine()) != null) {
-                final String currentMessage = message;
-
-                // Mesaj işleme işlerini kuyrukta sıraya al (lambda fonksiyonu)
-                // verilen görevi (Runnable olarak) iş parçacığı havuzuna ekler.
-                // İş parçacığı havuzu, bir işi yürütmeden önce bu işi bir kuyrukta sıraya koyar ve işleme alınacak görevleri bu kuyruktan çeker.
-                // Her bir mesaj için bir Runnable nesnesi oluşturur ve bu Runnable nesnesini iş parçacığı havuzuna ekler. Bu işlem, mesajın işlenmesini kuyrukta sıraya koyar.
-                
-                // Neden İşlemleri Kuyrukta Sıraya Alıyoruz?
-                // İş parçacığı havuzunun sınırlı boyutunu yönetir ve iş parçacıklarının aşırı yüklenmesini önler.
-                // Aynı anda birden fazla işlemi yürütmek için doğru sıralamayı korur
-                threadPool.submit(() -> {
-                    try {
-                        if ("LEAVE_ROOM".equals(currentMessage)) {
-                            leaveRoom();
-                        } else if ("CLOSE_ROOM".equals(currentMessage) && userId == getRoomOwnerId(roomId)) {
-                            closeRoom();
-                        } else {
-                            saveMessageToDatabase(currentMessage);
-                            broadcastMessage(currentMessage);
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Mesaj işlenirken hata: " + e.getMessage());
-                    }
+        // Oda başka düğüme ait: istemci ya oraya yönlendirilir ya da oturum röle üzerinden sahip düğüme taşınır.
+        // Taşınan oturumda ROOM_OWNER, geçmiş ve katılımcı listesi sahip düğümden gelir.
+        private boolean joinRemoteRoom() {
+            Cluster.Node owner = cluster.ownerOf(roomId);
+            if (cluster.routing() == Cluster.Routing.REDIRECT) {
+                send("REDIRECT " + owner.clientAddress());
+                markDisconnect(ServerMetrics.DisconnectReason.REDIRECTED);
+                closeConnection();
+                return false;
+            }
+            try {
+                proxy = cluster.open(owner, userId, username, roomId, capabilities, connection, reason -> {
+                    markDisconnect(reason);
+                    closeConnection();
                 });
+            } catch (IOException e) {
+                System.err.println("Oda sahibi " + owner + " ile bağlantı kurulamadı: " + e.getMessage());
+                markDisconnect(ServerMetrics.DisconnectReason.SERVER_ERROR);
+                closeConnection();
+                return false;
             }
+            // Katılmayı bekleyen komutlar şeritte sırada; onlar iletildikten sonra doğrudan iletime geçilir
+            roomLanes.execute(roomId, () -> proxyReady = true);
+            return true;
         }
 
-        private int getRoomOwnerId(int roomId) throws SQLException {
-            String query = "SELECT creator_id FROM rooms WHERE id = ?";
-            try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, roomId);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    return rs.getInt("creator_id");
+        // Üyeyi odaya ekler (oda bellekte yoksa oluşturulur) ve katılımcı listesinin yeni sürümünü döner.
+        // Yalnızca bu odanın üyelik kilidi alınır; diğer odalardaki katılma, ayrılma ve yayınlar beklemez.
+        // Kilit ReentrantLock'tur (synchronized değil), bekleyen virtual thread taşıyıcı thread'i sabitlemez.
+        // Oda tam bu anda boşta kalma süresi dolup emekliye ayrıldıysa haritadan çıkarılır ve yeni oda ile tekrar denenir.
+        long enterRoom() {
+            while (true) {
+                // roomId yoksa ekle, varsa değiştirme
+                Room room = rooms.computeIfAbsent(roomId, Room::new);
+                long version = room.addMember(this);
+                if (version >= 0) {
+                    joinedRoom = room;
+                    return version;
                 }
+                rooms.remove(roomId, room);
             }
-            return -1;
         }
 
-        private void closeRoom() {
-            synchronized (rooms) {
-                notifyRoomMembers("[+] Oda kapatıldı.");
-                deleteRoomFromDatabase();
-                List<ClientHandler> clients = rooms.get(roomId);
-                if (clients != null) {
-                    for (ClientHandler client : clients) {
-                        client.out.println("ROOM_CLOSED");
-                        client.closeConnection();
-                    }
-                    rooms.remove(roomId);
+        // Katılmayı odaya duyurur: bildirim satırı, katılana tam liste, diğerlerine değişiklik
+        void announceJoin(long version) {
+            notifyRoomMembers("[+] " + username + " odaya katıldı.");
+            sendParticipantSnapshot();
+            announceParticipantChange("PARTICIPANT_JOINED", version);
+        }
+
+        // Her okumadan önce bütçe kontrol edilir: bütçe bittiyse veya sunucu doluysa thread bekler ve soket okunmaz.
+        // Okunmayan baytlar çekirdeğin alma tamponunda kalır, dolunca istemcinin gönderimi TCP tarafından durdurulur.
+        private void handleClientMessages() throws IOException, SQLException {
+            SocketConnection socketConnection = (SocketConnection) connection;
+            if (socketConnection.isBinary()) {
+                do {
+                    awaitIngestBudget();
+                } while (socketConnection.readFrame(this::onFrame)); // her çerçeve onFrame içinde odanın şeridine verilir
+                return;
+            }
+
+            String message;
+            while (true) {
+                awaitIngestBudget();
+                if ((message = socketConnection.readLine()) == null) {
+                    break;
                 }
+                processMessage(message);
             }
         }
 
-        private void deleteRoomFromDatabase() {
-            String deleteMessagesQuery = "DELETE FROM messages WHERE room_id = ?";
-            String deleteRoomQuery = "DELETE FROM rooms WHERE id = ?";
-
-            try (Connection conn = getConnection()) {
-                conn.setAutoCommit(false);
+        private void awaitIngestBudget() {
+            long delay;
+            while ((delay = ingestDelayNanos()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+        }
 
-                try (PreparedStatement deleteMessagesStmt = conn.prepareStatement(deleteMessagesQuery); PreparedStatement deleteRoomStmt = conn.prepareStatement(deleteRoomQuery)) {
+        // Bir sonraki komutu okumadan önce beklenmesi gereken süre (0: hemen okunabilir). NIO motoru bu süre boyunca OP_READ'i kapatır.
+        long ingestDelayNanos() {
+            long delay = ingestBudget.nanosUntilAvailable();
+            if (delay == 0 && pendingCommands.get() >= PAUSE_READING_AT) {
+                delay = BACKPRESSURE_PAUSE_NANOS;
+            }
+            if (delay > 0) {
+                ServerMetrics.ingestThrottled();
+            }
+            return delay;
+        }
 
-                    deleteMessagesStmt.setInt(1, roomId);
-                    deleteMessagesStmt.executeUpdate();
+        // Metin protokolündeki satırı komuta çevirir. Komutlar satırın tamamı karşılaştırılarak bulunur;
+        // bu modda "LEAVE_ROOM" yazan kullanıcı gerçekten odadan çıkar. İkili protokolde bu belirsizlik yoktur.
+        private void processMessage(String currentMessage) {
+            if ("LEAVE_ROOM".equals(currentMessage)) {
+                processCommand(BinaryFrames.LEAVE_ROOM, 0, null);
+            } else if ("CLOSE_ROOM".equals(currentMessage)) {
+                processCommand(BinaryFrames.CLOSE_ROOM, 0, null);
+            } else if ("PARTICIPANTS_SYNC".equals(currentMessage) && supportsParticipantDeltas()) {
+                processCommand(BinaryFrames.PARTICIPANTS_SYNC, 0, null);
+            } else if (currentMessage.startsWith("HISTORY_BEFORE ")) {
+                try {
+                    processCommand(BinaryFrames.HISTORY_BEFORE, Long.parseLong(currentMessage.substring(15).trim()), null);
+                } catch (NumberFormatException e) {
+                    System.err.println("Geçersiz geçmiş imleci: " + e.getMessage());
+                }
+            } else {
+                processCommand(BinaryFrames.CHAT, 0, currentMessage);
+            }
+        }
 
-                    deleteRoomStmt.setInt(1, roomId);
-                    int rowsAffected = deleteRoomStmt.executeUpdate();
+        void processCommand(byte command, long argument, String text) {
+            ingestBudget.consume();
+            if (proxyReady) {
+                proxy.forward(command, argument, text);
+                return;
+            }
+            // Sınıra ulaşıldıysa sohbet ve geçmiş istekleri reddedilir; ayrılma/kapatma gibi durum değiştiren komutlar her zaman kabul edilir
+            if ((command == BinaryFrames.CHAT || command == BinaryFrames.HISTORY_BEFORE)
+                    && pendingCommands.get() >= ServerConfig.INGEST_MAX_PENDING) {
+                ServerMetrics.ingestRejected();
+                send("MESSAGE_REJECTED");
+                return;
+            }
+            pendingCommands.incrementAndGet();
+            // Mesaj işleme işlerini odanın şeridinde sıraya al (lambda fonksiyonu)
+            // verilen görevi (Runnable olarak) iş parçacığı havuzuna ekler.
+            // İş parçacığı havuzu, bir işi yürütmeden önce bu işi bir kuyrukta sıraya koyar ve işleme alınacak görevleri bu kuyruktan çeker.
+            // Her bir mesaj için bir Runnable nesnesi oluşturur ve bu Runnable nesnesini iş parçacığı havuzuna ekler. Bu işlem, mesajın işlenmesini kuyrukta sıraya koyar.
 
-                    if (rowsAffected > 0) {
-                        conn.commit();
-                        System.out.println("Oda ve ilgili mesajlar başarıyla silindi: ID = " + roomId);
-                    } else {
-                        conn.rollback();
-                        System.err.println("Oda silinirken bir hata oluştu veya oda zaten yoktu.");
+            // Neden İşlemleri Kuyrukta Sıraya Alıyoruz?
+            // İş parçacığı havuzunun sınırlı boyutunu yönetir ve iş parçacıklarının aşırı yüklenmesini önler.
+            // Aynı anda birden fazla işlemi yürütmek için doğru sıralamayı korur
+            // Şerit, aynı odanın görevlerini sırayla çalıştırır; farklı odaların görevleri havuzdaki farklı iş parçacıklarında paralel çalışır.
+            roomLanes.execute(roomId, () -> {
+                pendingCommands.decrementAndGet();
+                try {
+                    if (proxy != null) {
+                        proxy.forward(command, argument, text);
+                        return;
+                    }
+                    if (joinedRoom == null) {
+                        return; // Katılma başarısız oldu (oda yok), bağlantı kapanıyor
                     }
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
+                    switch (command) {
+                        case BinaryFrames.LEAVE_ROOM -> leaveRoom();
+                        case BinaryFrames.HISTORY_BEFORE -> sendHistoryPage(argument);
+                        case BinaryFrames.PARTICIPANTS_SYNC -> sendParticipantSnapshot();
+                        case BinaryFrames.CLOSE_ROOM -> {
+                            // Üst bilgi bakım görevinde atılmış olabilir; gerekirse depodan yeniden okunur
+                            RoomDirectory.RoomInfo info = roomDirectory.get(roomId);
+                            if (info != null && userId == info.creatorId()) {
+                                closeRoom();
+                            }
+                        }
+                        default -> persistAndBroadcast(text);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Mesaj işlenirken hata: " + e.getMessage());
                 }
+            });
+        }
+
+        // İstemciye bir protokol satırı gönderir
+        void send(String line) {
+            connection.send(line);
+        }
+
+        // Birden çok alıcıya giden, önceden kodlanmış satırı gönderir
+        void send(OutboundMessage message) {
+            connection.send(message);
+        }
+
+        // Oda yalnızca işaretlenir (tek satır) ve üyeleri hemen çıkarılır; mesajlar ve oda satırı RoomReaper'da arka planda silinir.
+        // İşaretlendikten sonra findRoom odayı bulmaz, katılma denemeleri ROOM_NOT_FOUND alır.
+        private void closeRoom() {
+            Room room = rooms.get(roomId);
+            if (room == null) {
+                return;
+            }
+            try {
+                messageStore.tombstoneRoom(roomId);
             } catch (SQLException e) {
-                e.printStackTrace();
+                System.err.println("Oda kapatılamadı (ID = " + roomId + "): " + e.getMessage());
+                return;
+            }
+            notifyRoomMembers("[+] Oda kapatıldı.");
+            List<ClientHandler> clients = room.retire();
+            rooms.remove(roomId, room);
+            roomDirectory.remove(roomId);
+            roomLanes.retire(roomId);
+            OutboundMessage roomClosed = OutboundMessage.of("ROOM_CLOSED");
+            for (ClientHandler client : clients) {
+                client.send(roomClosed);
+                client.markDisconnect(ServerMetrics.DisconnectReason.ROOM_CLOSED);
+                client.closeConnection();
             }
+            roomReaper.submit(roomId);
         }
 
-        // ReentrantLock niye kullanıldı?
-        // Object-level locks, yalnızca belirli bir nesne üzerinde kilitlenebilir ve bu kilit, sadece o nesnenin üyeleri üzerinde etkilidir. rooms haritası üzerinde eş zamanlı erişim gerekli.
-        // Bir sınıfın tüm instance'ları üzerinde kilitler. Bir sınıf içindeki tüm nesneler aynı anda kilitli olacağından, bu tür kilitler genellikle verimsizdir.
-        // ReadWriteLock uygun değildir çünkü burada yazma operasyonları dışında başka bir işlem yapılmaz.
-        // StampedLock kullanmak, ReentrantLock'a göre daha karmaşık ve spesifik bir çözüm gerektirir. Ayrıca, bir mesaj yayınlama işlemi için basit bir kilit yeterlidir.
-        // Burada rooms ve clientHandler yönetiminde bir kaynak sınırlaması yoktur. Semaphore daha ziyade bir sınırlı kaynak havuzunu izlemek için kullanılırken daha doğrudur.
-        // Countdown Latch: Belirli bir olayın gerçekleşmesi için bir dizi iş parçacığının tamamlanmasını bekler. İş parçacıkları bu latch'i beklerken işlem yapamaz.
-        // Mutex: Özel bir kilitleme ve eş zamanlı erişim kontrolü sağlar. Mutex, genellikle sistem seviyesinde daha alt düzey işlemler için kullanılır.
-        private void broadcastMessage(String message) {
-            lock.lock();
-            try {
-                List<ClientHandler> clients = rooms.get(roomId); // Odadaki kullanıcıları al
-                if (clients != null) {
-                    for (ClientHandler client : clients) {
-                        if (client != this) {
-                            client.out.println(username + ": " + message);
-                        }
+        // Yayın sırasında hiçbir kilit alınmaz.
+        // Üye listesi CopyOnWriteArrayList olduğu için dolaşma, o anki değişmez dizi üzerinde yapılır; eş zamanlı bir katılma veya ayrılma
+        // yeni bir dizi oluşturur ve bu yayını etkilemez. Eskiden tek bir global ReentrantLock tüm odalardaki yayınları sıraya sokuyordu.
+        void broadcastMessage(ChatMessage message) {
+            long start = System.nanoTime();
+            Room room = rooms.get(roomId); // Odadaki kullanıcıları al
+            if (room != null) {
+                // Mesaj odanın son mesaj tamponuna da eklenir; katılanlar geçmişi buradan alır.
+                room.recent().append(message);
+                // Satır bir kez biçimlendirilir ve kodlanır, aynı bayt dizisi tüm alıcılara yazılır.
+                OutboundMessage outbound = OutboundMessage.chat(roomId, message.id(), username + ": " + message.text());
+                for (ClientHandler client : room.members()) {
+                    if (client != this) {
+                        client.send(outbound);
                     }
                 }
-            } finally {
-                lock.unlock();
+                ServerMetrics.broadcastTook(start);
             }
         }
 
         private void leaveRoom() {
-            synchronized (rooms) {
-                List<ClientHandler> clients = rooms.get(roomId);
-                if (clients != null) {
-                    clients.remove(this);
-                    if (clients.isEmpty()) {
-                        rooms.remove(roomId);
-                    } else {
-                        notifyRoomMembers("[+] " + username + " odadan ayrıldı.");
-                        updateParticipantsList();
-                    }
-                }
-            }
+            markDisconnect(ServerMetrics.DisconnectReason.LEFT_ROOM);
+            removeFromRoom();
             closeConnection();
         }
 
+        // Bağlantıyı kapatmadan önce nedenini kaydeder. Sonraki nedenler (örneğin kapanan soketin okuma hatası) yok sayılır.
+        void markDisconnect(ServerMetrics.DisconnectReason reason) {
+            disconnectReason.compareAndSet(null, reason);
+        }
+
+        ServerMetrics.DisconnectReason disconnectReason() {
+            return disconnectReason.get();
+        }
+
+        // Bağlantı kapandığında (her bağlantı için bir kez) çağrılır.
+        // LEAVE_ROOM gönderilmeden koptuysa (veya yavaş istemci olarak kesildiyse) üye odadan çıkarılır;
+        // aksi halde kapalı bağlantısına yayın yapılmaya devam edilir ve katılımcı listesinde kalır.
+        void onDisconnected() {
+            markDisconnect(ServerMetrics.DisconnectReason.CLIENT_CLOSED);
+            ServerMetrics.clientDisconnected(disconnectReason.get());
+            Cluster.ProxySession relay = proxy;
+            if (relay != null) {
+                relay.close();
+            }
+            if (joinedRoom != null && !left.get()) {
+                roomLanes.execute(roomId, this::removeFromRoom);
+            }
+        }
+
+        void removeFromRoom() {
+            Room room = joinedRoom;
+            if (room == null || !left.compareAndSet(false, true)) {
+                return;
+            }
+            // Son üye ayrılsa da oda hemen kaldırılmaz; boşta kalma süresi dolunca evictIdleRooms çıkarır
+            long version = room.removeMember(this);
+            if (!room.isRetired() && !room.isEmpty()) {
+                notifyRoomMembers("[+] " + username + " odadan ayrıldı.");
+                announceParticipantChange("PARTICIPANT_LEFT", version);
+            }
+        }
+
         private void notifyRoomMembers(String notification) {
-            synchronized (rooms) {
-                List<ClientHandler> clients = rooms.get(roomId);
-                if (clients != null) {
-                    for (ClientHandler client : clients) {
-                        client.out.println(notification);
-                    }
+            Room room = rooms.get(roomId);
+            if (room != null) {
+                OutboundMessage outbound = OutboundMessage.chat(roomId, 0, notification);
+                for (ClientHandler client : room.members()) {
+                    client.send(outbound);
                 }
             }
         }
 
-        private void updateParticipantsList() {
-            synchronized (rooms) {
-                List<ClientHandler> clients = rooms.get(roomId);
-                if (clients != null) {
-                    StringBuilder participants = new StringBuilder();
-                    for (ClientHandler client : clients) {
-                        participants.append(client.username).append(",");
-                    }
+        // Katıldığı oda (katılmadan önce null)
+        Room room() {
+            return joinedRoom;
+        }
 
-                    // Son virgülü kaldır
-                    if (participants.length() > 0) {
-                        participants.setLength(participants.length() - 1);
-                    }
+        boolean supportsParticipantDeltas() {
+            return capabilities.contains("delta");
+        }
 
-                    // Katılımcı listesini tüm odadaki kullanıcılara gönder
-                    for (ClientHandler client : clients) {
-                        client.out.println("UPDATE_PARTICIPANTS_LIST " + participants);
+        // Katılımcı listesindeki tek bir değişikliği odaya duyurur.
+        // Delta destekleyen istemciler yalnızca "PARTICIPANT_JOINED|PARTICIPANT_LEFT <sürüm> <ad>" alır, böylece bir katılmada
+        // n üyeye n adlık liste (O(n²) bayt) yerine tek bir ad gider. Her PARTICIPANTS_SNAPSHOT_EVERY sürümde bir tam liste gönderilir.
+        // Eski istemciler her değişiklikte tam listeyi (UPDATE_PARTICIPANTS_LIST) almaya devam eder.
+        private void announceParticipantChange(String change, long version) {
+            Room room = rooms.get(roomId);
+            if (room == null) {
+                return;
+            }
+            boolean periodicSnapshot = version % ServerConfig.PARTICIPANTS_SNAPSHOT_EVERY == 0;
+            OutboundMessage delta = OutboundMessage.of(change + " " + version + " " + username);
+            OutboundMessage snapshot = null;
+            OutboundMessage fullList = null;
+            for (ClientHandler client : room.members()) {
+                if (client == this) {
+                    continue; // Katılan üye tam listeyi zaten aldı, ayrılan üye artık listede değil
+                }
+                if (client.supportsParticipantDeltas() && !periodicSnapshot) {
+                    client.send(delta);
+                    continue;
+                }
+                // Tam liste gerektiğinde bir kez oluşturulur ve aynı baytlar tüm alıcılara gider
+                if (client.supportsParticipantDeltas()) {
+                    if (snapshot == null) {
+                        snapshot = participantSnapshot(room.participants());
                     }
+                    client.send(snapshot);
+                } else {
+                    if (fullList == null) {
+                        fullList = participantList(room.participants());
+                    }
+                    client.send(fullList);
                 }
             }
         }
 
-        private void saveMessageToDatabase(String message) throws SQLException {
-            String query = "INSERT INTO messages (room_id, sender_id, message, date_time) VALUES (?, ?, ?, ?)";
-            try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, roomId);
-                stmt.setInt(2, userId);
-                stmt.setString(3, message);
-                stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-                stmt.executeUpdate();
+        // Bu istemciye listenin tamamını gönderir (katılmada ve istemci sürüm boşluğu fark edip PARTICIPANTS_SYNC istediğinde).
+        private void sendParticipantSnapshot() {
+            Room room = joinedRoom;
+            if (room == null) {
+                return;
             }
+            Room.Participants participants = room.participants();
+            send(supportsParticipantDeltas() ? participantSnapshot(participants) : participantList(participants));
+        }
+
+        // PARTICIPANTS_SNAPSHOT <sürüm> <ad1,ad2,...>
+        static OutboundMessage participantSnapshot(Room.Participants participants) {
+            return OutboundMessage.coalescing("participants", "PARTICIPANTS_SNAPSHOT " + participants.version() + " " + joinUsernames(participants.members()));
         }
 
-        private void sendRoomMessagesToClient() throws SQLException {
-            String query = "SELECT sender_id, message, date_time FROM messages WHERE room_id = ? ORDER BY date_time";
-            try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, roomId);
+        // Eski istemciler için: UPDATE_PARTICIPANTS_LIST <ad1,ad2,...>
+        // Yavaş istemcinin kuyruğunda yalnızca en güncel liste tutulur (coalesce politikası)
+        static OutboundMessage participantList(Room.Participants participants) {
+            return OutboundMessage.coalescing("participants", "UPDATE_PARTICIPANTS_LIST " + joinUsernames(participants.members()));
+        }
 
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    int senderId = rs.getInt("sender_id");
-                    String message = rs.getString("message");
-                    String senderName = (senderId == userId) ? "Ben" : getUsernameById(senderId);
+        private static String joinUsernames(List<ClientHandler> clients) {
+            StringBuilder participants = new StringBuilder();
+            for (ClientHandler client : clients) {
+                participants.append(client.username).append(",");
+            }
 
-                    out.println(senderName + ": " + message);
-                }
+            // Son virgülü kaldır
+            if (participants.length() > 0) {
+                participants.setLength(participants.length() - 1);
+            }
+            return participants.toString();
+        }
+
+        // Mesajı yazıcının günlüğüne ekler ve seçilen dayanıklılık moduna göre yayınlar.
+        // AFTER_COMMIT modunda yayın, yazıcı thread'inde commit sırasıyla yapılır; böylece mesaj sırası korunur.
+        private void persistAndBroadcast(String text) throws InterruptedException {
+            ChatMessage message = new ChatMessage(nextMessageId(), roomId, userId, username, text, System.currentTimeMillis());
+            CompletableFuture<Void> committed = messageWriter.append(message);
+            if (messageWriter.durability() == MessageWriter.Durability.AFTER_COMMIT) {
+                committed.whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        broadcastMessage(message);
+                    } else {
+                        System.err.println("Mesaj kaydedilemediği için iletilmedi: " + error.getMessage());
+                    }
+                });
+            } else {
+                broadcastMessage(message);
             }
         }
 
-        private String getUsernameById(int senderId) throws SQLException {
-            String query = "SELECT username FROM users WHERE id = ?";
-            try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, senderId);
-                ResultSet rs = stmt.executeQuery();
+        // Katılmada odanın tüm geçmişi yerine yalnızca son HISTORY_PAGE_SIZE mesaj gönderilir.
+        // Mesajlar odanın bellekteki son mesaj tamponundan gelir; veritabanına yalnızca tampon ilk kez doldurulurken gidilir.
+        // Daha eski mesajlar varsa istemciye bir imleç (en eski mesajın id'si) verilir, istemci HISTORY_BEFORE <id> ile önceki sayfayı ister.
+        private void sendRoomMessagesToClient() throws SQLException, IOException {
+            RecentMessages.Page page = joinedRoom.recent().latest(ServerConfig.HISTORY_PAGE_SIZE, this::loadHistoryPage);
+            for (ChatMessage message : page.messages()) {
+                send(OutboundMessage.chat(roomId, message.id(), renderHistoryLine(message)));
+            }
+            if (page.hasMore()) {
+                send("HISTORY_CURSOR " + page.messages().get(0).id());
+            }
+        }
 
-                if (rs.next()) {
-                    return rs.getString("username");
-                }
+        // İstemcinin istediği eski sayfa: HISTORY_PAGE <adet>, ardından o kadar satır, sonra HISTORY_CURSOR <id> veya HISTORY_END
+        // Tampon isteği karşılayabiliyorsa oradan, karşılayamıyorsa veritabanından okunur.
+        // Sayfa giden kuyruğa tek bir mesaj olarak girer: yavaş istemci politikası satırlarından birini atamaz,
+        // başka bir thread'in yayınladığı canlı mesaj da sayfa satırlarının arasına giremez (istemci satırları sayarak okur).
+        private void sendHistoryPage(long beforeId) throws SQLException, IOException {
+            Room room = joinedRoom;
+            RecentMessages.Page page = room != null ? room.recent().before(beforeId, ServerConfig.HISTORY_PAGE_SIZE) : null;
+            if (page == null) {
+                List<ChatMessage> messages = loadHistoryPage(beforeId, ServerConfig.HISTORY_PAGE_SIZE);
+                page = new RecentMessages.Page(messages, messages.size() == ServerConfig.HISTORY_PAGE_SIZE);
             }
-            return "Bilinmeyen Kullanıcı";
+            List<OutboundMessage> lines = new ArrayList<>(page.messages().size() + 2);
+            lines.add(OutboundMessage.of("HISTORY_PAGE " + page.messages().size()));
+            for (ChatMessage message : page.messages()) {
+                lines.add(OutboundMessage.history(roomId, message.id(), renderHistoryLine(message)));
+            }
+            lines.add(OutboundMessage.of(page.hasMore() ? "HISTORY_CURSOR " + page.messages().get(0).id() : "HISTORY_END"));
+            send(OutboundMessage.sequence(lines));
+        }
+
+        private String renderHistoryLine(ChatMessage message) {
+            String senderName = (message.senderId() == userId) ? "Ben" : message.senderName();
+            return senderName + ": " + message.text();
         }
 
-        private Connection getConnection() throws SQLException {
-            return DriverManager.getConnection("jdbc:mysql://localhost:3306/chatapp_db", "root", "");
+        // beforeId'den küçük id'li en yeni "limit" mesajı eskiden yeniye sıralı döner (imleçli okuma, bkz. MessageStore.readBefore).
+        // Sıcak tablo sayfayı dolduramazsa (istemci tablodaki en eski mesajın gerisine geldi) kalanı arşivden okunur.
+        // Depo gönderen adını bilmiyorsa (JDBC) adlar kullanıcı önbelleğinden çözülür; önbellekte olmayanlar sayfa başına tek bir toplu sorguyla getirilir.
+        private List<ChatMessage> loadHistoryPage(long beforeId, int limit) throws SQLException, IOException {
+            List<ChatMessage> rows = messageStore.readBefore(roomId, beforeId, limit);
+            if (rows.size() < limit) {
+                long archiveBefore = rows.isEmpty() ? beforeId : rows.get(0).id();
+                List<ChatMessage> archived = messageArchive.readBefore(roomId, archiveBefore, limit - rows.size());
+                if (!archived.isEmpty()) {
+                    archived = new ArrayList<>(archived);
+                    archived.addAll(rows);
+                    rows = archived;
+                }
+            }
+            Set<Integer> senderIds = new HashSet<>();
+            for (ChatMessage row : rows) {
+                if (row.senderName() == null) {
+                    senderIds.add(row.senderId());
+                }
+            }
+            if (senderIds.isEmpty()) {
+                return rows;
+            }
+
+            Map<Integer, String> senderNames = userDirectory.usernames(senderIds);
+            List<ChatMessage> page = new ArrayList<>(rows.size());
+            for (ChatMessage row : rows) {
+                String senderName = row.senderName() != null ? row.senderName()
+                        : senderNames.getOrDefault(row.senderId(), "Bilinmeyen Kullanıcı");
+                page.add(new ChatMessage(row.id(), roomId, row.senderId(), senderName, row.text(), row.timestampMillis()));
+            }
+            return page;
         }
 
         private void closeConnection() {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                System.err.println("Soket kapatma hatası: " + e.getMessage());
+            if (connection != null) {
+                connection.close();
+            } else if (clientSocket != null) {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    System.err.println("Soket kapatma hatası: " + e.getMessage());
+                }
             }
         }
     }
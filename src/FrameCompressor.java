@@ -0,0 +1,103 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+// Bağlantı başına deflate sıkıştırması (ikili protokolde, el sıkışmada "deflate" yeteneği bildirildiyse).
+// Yazıcının kuyruktan tek seferde aldığı çerçeveler (örneğin katılmadaki geçmiş sayfası veya yoğun odada biriken mesajlar)
+// eşiği aşıyorsa tek bir COMPRESSED çerçevesi olarak gönderilir. Deflater bağlantı boyunca aynı akışı sürdürür ve her grupta
+// SYNC_FLUSH yapar: önceki mesajlar sözlük görevi görür, istemci her grubu beklemeden açabilir.
+// Eşiğin altındaki gruplar sıkıştırılmaz; yayında paylaşılan çerçeve baytları kopyalanmadan yazılmaya devam eder.
+// Deflater ve çıktı tamponu bağlantı boyunca yeniden kullanılır, mesaj başına nesne üretilmez.
+final class FrameCompressor {
+
+    // Tüm bağlantılar için: sıkıştırılan ham bayt ve gönderilen sıkıştırılmış bayt
+    private static final LongAdder rawBytes = new LongAdder();
+    private static final LongAdder compressedBytes = new LongAdder();
+
+    // COMPRESSED çerçevesinin başlığı: uzunluk + opcode + oda id + sıra no (açılmış uzunluk)
+    private static final int FRAME_HEADER_BYTES = 4 + BinaryFrames.HEADER_BYTES;
+
+    private final Deflater deflater;
+    private final int threshold;
+    private ByteBuffer output = ByteBuffer.allocate(8 * 1024);
+    private boolean closed;
+
+    FrameCompressor(int level, int threshold) {
+        // nowrap: zlib başlığı ve sağlama toplamı yok, akış yalnızca deflate bloklarından oluşur
+        this.deflater = new Deflater(level, true);
+        this.threshold = threshold;
+    }
+
+    static FrameCompressor fromConfig() {
+        return new FrameCompressor(ServerConfig.COMPRESSION_LEVEL, ServerConfig.COMPRESSION_THRESHOLD);
+    }
+
+    // Toplam boyutu eşiğin altındaysa null döner (çerçeveler olduğu gibi yazılmalı).
+    // Aksi halde çerçeveleri sıkıştırır ve tek bir COMPRESSED çerçevesi döner. Dönen tampon bir sonraki çağrıya kadar geçerlidir.
+    synchronized ByteBuffer compress(ByteBuffer[] frames, int from, int to) {
+        if (closed) {
+            return null;
+        }
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += frames[i].remaining();
+        }
+        if (total < threshold || total > Integer.MAX_VALUE - FRAME_HEADER_BYTES) {
+            return null;
+        }
+
+        output.clear();
+        output.position(FRAME_HEADER_BYTES);
+        for (int i = from; i < to; i++) {
+            // Paylaşılan tampon değil, kendi görünümü tüketilir; yazma yapılmayacaksa konumu değişmemiş olur
+            deflater.setInput(frames[i].duplicate());
+            while (!deflater.needsInput()) {
+                deflateInto(Deflater.NO_FLUSH);
+            }
+        }
+        // Çıktı tamponu dolmadan biten SYNC_FLUSH, grubun tamamının yazıldığını gösterir
+        do {
+            deflateInto(Deflater.SYNC_FLUSH);
+        } while (!output.hasRemaining());
+
+        int length = output.position() - 4;
+        output.putInt(0, length);
+        output.put(4, BinaryFrames.COMPRESSED);
+        output.putInt(5, 0);
+        output.putLong(9, total);
+        output.flip();
+        // Kuyruktaki görünümler sıkıştırılmış çerçeveyle birlikte yazılmış sayılır
+        for (int i = from; i < to; i++) {
+            frames[i].position(frames[i].limit());
+        }
+        rawBytes.add(total);
+        compressedBytes.add(output.remaining());
+        return output;
+    }
+
+    // Bağlantı kapanırken çağrılır; Deflater'ın yerel belleği hemen bırakılır.
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            deflater.end();
+        }
+    }
+
+    static long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    static long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    private void deflateInto(int flush) {
+        if (!output.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(output.capacity() * 2);
+            output.flip();
+            larger.put(output);
+            output = larger;
+        }
+        deflater.deflate(output, flush);
+    }
+}
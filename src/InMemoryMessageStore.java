@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Süreç içinde tutulan mesaj deposu (-Dchat.store=memory). Veritabanı olmadan sunucuyu çalıştırmak için: yük testleri, ölçümler, CI.
+// Her odanın mesajları id'ye göre sıralı, kilitsiz bir ConcurrentSkipListMap'te tutulur; imleçli okuma bir headMap görünümüdür.
+// Oda başına mesaj sayısı sınırlıdır, sınır aşılınca en eski mesajlar atılır. Sunucu kapanınca her şey kaybolur.
+// Odalar istemci tarafından (rooms tablosuna) oluşturulduğu için bu modda sunucu bilinmeyen odayı ilk katılmada kendisi oluşturabilir;
+// böyle odaların sahibi yoktur (kimse kapatamaz) ve şifresi yoktur.
+final class InMemoryMessageStore implements MessageStore {
+
+    // Oluşturulan odanın sahibi: hiçbir kullanıcı
+    private static final int NO_OWNER = 0;
+
+    private final boolean autoCreateRooms;
+    private final int maxMessagesPerRoom;
+    private final Map<Integer, RoomDirectory.RoomInfo> rooms = new ConcurrentHashMap<>();
+    private final Map<Integer, RoomLog> logs = new ConcurrentHashMap<>();
+    // Silinmekte olan odalar; silme bitene kadar kendiliğinden yeniden oluşturulmazlar
+    private final Set<Integer> tombstones = ConcurrentHashMap.newKeySet();
+
+    InMemoryMessageStore(boolean autoCreateRooms, int maxMessagesPerRoom) {
+        this.autoCreateRooms = autoCreateRooms;
+        this.maxMessagesPerRoom = Math.max(1, maxMessagesPerRoom);
+    }
+
+    @Override
+    public void append(List<ChatMessage> batch) {
+        for (ChatMessage message : batch) {
+            append(message);
+        }
+    }
+
+    @Override
+    public void append(ChatMessage message) {
+        RoomLog log = logs.computeIfAbsent(message.roomId(), id -> new RoomLog());
+        if (log.messages.put(message.id(), message) == null && log.size.incrementAndGet() > maxMessagesPerRoom) {
+            if (log.messages.pollFirstEntry() != null) {
+                log.size.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public List<ChatMessage> readBefore(int roomId, long beforeId, int limit) {
+        RoomLog log = logs.get(roomId);
+        if (log == null) {
+            return List.of();
+        }
+        List<ChatMessage> page = new ArrayList<>(limit);
+        for (ChatMessage message : log.messages.headMap(beforeId, false).descendingMap().values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(message);
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public long maxMessageId() {
+        long max = 0;
+        for (RoomLog log : logs.values()) {
+            Map.Entry<Long, ChatMessage> last = log.messages.lastEntry();
+            if (last != null) {
+                max = Math.max(max, last.getKey());
+            }
+        }
+        return max;
+    }
+
+    // JDBC deposuyla aynı: yalnızca var olan ve henüz işaretlenmemiş oda ilk kez işaretlendiğinde true döner.
+    // İşaretleme ve kaldırma odanın kaydı üzerinde atomik yapılır; aynı anda çalışan findRoom odayı yeniden oluşturamaz.
+    @Override
+    public boolean tombstoneRoom(int roomId) {
+        boolean[] tombstoned = new boolean[1];
+        rooms.computeIfPresent(roomId, (id, room) -> {
+            tombstoned[0] = tombstones.add(id);
+            return null;
+        });
+        return tombstoned[0];
+    }
+
+    @Override
+    public int deleteRoomMessages(int roomId, int limit) {
+        RoomLog log = logs.get(roomId);
+        int deleted = 0;
+        while (log != null && deleted < limit && log.messages.pollFirstEntry() != null) {
+            log.size.decrementAndGet();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public void purgeRoom(int roomId) {
+        logs.remove(roomId);
+        tombstones.remove(roomId);
+    }
+
+    @Override
+    public List<Integer> tombstonedRooms() {
+        return new ArrayList<>(tombstones);
+    }
+
+    @Override
+    public RoomDirectory.RoomInfo findRoom(int roomId) {
+        if (tombstones.contains(roomId)) {
+            return null;
+        }
+        if (!autoCreateRooms) {
+            return rooms.get(roomId);
+        }
+        return rooms.computeIfAbsent(roomId, id -> tombstones.contains(id) ? null : new RoomDirectory.RoomInfo(id, "oda-" + id, NO_OWNER));
+    }
+
+    @Override
+    public List<Integer> roomsWithMessages() {
+        List<Integer> roomIds = new ArrayList<>();
+        logs.forEach((roomId, log) -> {
+            if (!log.messages.isEmpty() && !tombstones.contains(roomId)) {
+                roomIds.add(roomId);
+            }
+        });
+        return roomIds;
+    }
+
+    @Override
+    public long countMessages(int roomId) {
+        RoomLog log = logs.get(roomId);
+        return log == null ? 0 : log.size.get();
+    }
+
+    @Override
+    public List<ChatMessage> readOldest(int roomId, int limit) {
+        RoomLog log = logs.get(roomId);
+        List<ChatMessage> oldest = new ArrayList<>(limit);
+        if (log != null) {
+            for (ChatMessage message : log.messages.values()) {
+                if (oldest.size() == limit) {
+                    break;
+                }
+                oldest.add(message);
+            }
+        }
+        return oldest;
+    }
+
+    @Override
+    public int deleteMessagesThrough(int roomId, long lastId) {
+        RoomLog log = logs.get(roomId);
+        int deleted = 0;
+        while (log != null) {
+            Map.Entry<Long, ChatMessage> first = log.messages.firstEntry();
+            if (first == null || first.getKey() > lastId || !log.messages.remove(first.getKey(), first.getValue())) {
+                break;
+            }
+            log.size.decrementAndGet();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    // Bir odanın mesajları. Boyut ayrıca tutulur; skip list'in size() çağrısı tüm listeyi dolaşır.
+    private static final class RoomLog {
+
+        private final ConcurrentSkipListMap<Long, ChatMessage> messages = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+}
@@ -0,0 +1,282 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// MySQL'deki messages ve rooms tablolarına yazan mesaj deposu (varsayılan motor).
+// Mesajlar JDBC batch'i ve grup commit ile eklenir; geçmiş (room_id, id) indeksi üzerinden anahtar tabanlı sayfalanır.
+// Tüm çağrılar bağlantı havuzundan ödünç alınan bağlantılarla (ConnectionPool.execute) yapılır ve süreleri ServerMetrics'e yazılır.
+final class JdbcMessageStore implements MessageStore {
+
+    private static final String INSERT_QUERY = "INSERT INTO messages (id, room_id, sender_id, message, date_time) VALUES (?, ?, ?, ?, ?)";
+    private static final String ROOM_COLUMNS = "SELECT id, room_name, creator_id FROM rooms";
+
+    private final ConnectionPool dbPool;
+
+    JdbcMessageStore(ConnectionPool dbPool) {
+        this.dbPool = dbPool;
+    }
+
+    @Override
+    public void append(List<ChatMessage> messages) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dbPool.execute(pooled -> {
+                Connection conn = pooled.connection();
+                conn.setAutoCommit(false);
+                try {
+                    PreparedStatement stmt = pooled.prepare(INSERT_QUERY);
+                    for (ChatMessage message : messages) {
+                        bind(stmt, message);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                return null;
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.INSERT, start);
+        }
+    }
+
+    @Override
+    public void append(ChatMessage message) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dbPool.execute(pooled -> {
+                PreparedStatement stmt = pooled.prepare(INSERT_QUERY);
+                bind(stmt, message);
+                return stmt.executeUpdate();
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.INSERT, start);
+        }
+    }
+
+    // Gönderen adları burada okunmaz (users tablosuyla JOIN yapılmaz); çağıran kullanıcı önbelleğinden çözer.
+    @Override
+    public List<ChatMessage> readBefore(int roomId, long beforeId, int limit) throws SQLException {
+        String query = "SELECT id, sender_id, message, date_time FROM messages "
+                + "WHERE room_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+        ArrayDeque<ChatMessage> rows = new ArrayDeque<>();
+        long start = System.nanoTime();
+        try {
+            dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare(query);
+                stmt.setInt(1, roomId);
+                stmt.setLong(2, beforeId);
+                stmt.setInt(3, limit);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.addFirst(readMessage(rs, roomId));
+                    }
+                }
+                return null;
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.HISTORY, start);
+        }
+        return new ArrayList<>(rows);
+    }
+
+    @Override
+    public long maxMessageId() throws SQLException {
+        String query = "SELECT COALESCE(MAX(id), 0) FROM messages";
+        return dbPool.execute(conn -> {
+            try (ResultSet resultSet = conn.prepare(query).executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        });
+    }
+
+    @Override
+    public boolean tombstoneRoom(int roomId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare("UPDATE rooms SET deleted_at = NOW() WHERE id = ? AND deleted_at IS NULL");
+                stmt.setInt(1, roomId);
+                return stmt.executeUpdate() > 0;
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ROOM_TOMBSTONE, start);
+        }
+    }
+
+    // Her parça kendi işlemidir (otomatik commit); satır kilitleri parça boyunca tutulur, tüm silme boyunca değil.
+    @Override
+    public int deleteRoomMessages(int roomId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare("DELETE FROM messages WHERE room_id = ? ORDER BY id LIMIT ?");
+                stmt.setInt(1, roomId);
+                stmt.setInt(2, limit);
+                return stmt.executeUpdate();
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ROOM_DELETE, start);
+        }
+    }
+
+    @Override
+    public void purgeRoom(int roomId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dbPool.execute(pooled -> {
+                Connection conn = pooled.connection();
+                conn.setAutoCommit(false);
+                try {
+                    PreparedStatement deleteMessagesStmt = pooled.prepare("DELETE FROM messages WHERE room_id = ?");
+                    deleteMessagesStmt.setInt(1, roomId);
+                    deleteMessagesStmt.executeUpdate();
+
+                    PreparedStatement deleteRoomStmt = pooled.prepare("DELETE FROM rooms WHERE id = ? AND deleted_at IS NOT NULL");
+                    deleteRoomStmt.setInt(1, roomId);
+                    deleteRoomStmt.executeUpdate();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                return null;
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ROOM_DELETE, start);
+        }
+    }
+
+    @Override
+    public List<Integer> tombstonedRooms() throws SQLException {
+        List<Integer> roomIds = new ArrayList<>();
+        return dbPool.execute(conn -> {
+            try (ResultSet rs = conn.prepare("SELECT id FROM rooms WHERE deleted_at IS NOT NULL").executeQuery()) {
+                while (rs.next()) {
+                    roomIds.add(rs.getInt("id"));
+                }
+            }
+            return roomIds;
+        });
+    }
+
+    @Override
+    public RoomDirectory.RoomInfo findRoom(int roomId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare(ROOM_COLUMNS + " WHERE id = ? AND deleted_at IS NULL");
+                stmt.setInt(1, roomId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? readRoom(rs) : null;
+                }
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ROOM_LOOKUP, start);
+        }
+    }
+
+    @Override
+    public List<Integer> roomsWithMessages() throws SQLException {
+        String query = "SELECT id FROM rooms WHERE deleted_at IS NULL "
+                + "AND EXISTS (SELECT 1 FROM messages WHERE messages.room_id = rooms.id)";
+        List<Integer> roomIds = new ArrayList<>();
+        return dbPool.execute(conn -> {
+            try (ResultSet rs = conn.prepare(query).executeQuery()) {
+                while (rs.next()) {
+                    roomIds.add(rs.getInt("id"));
+                }
+            }
+            return roomIds;
+        });
+    }
+
+    @Override
+    public long countMessages(int roomId) throws SQLException {
+        return dbPool.execute(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT COUNT(*) FROM messages WHERE room_id = ?");
+            stmt.setInt(1, roomId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    @Override
+    public List<ChatMessage> readOldest(int roomId, int limit) throws SQLException {
+        String query = "SELECT id, sender_id, message, date_time FROM messages WHERE room_id = ? ORDER BY id LIMIT ?";
+        List<ChatMessage> rows = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare(query);
+                stmt.setInt(1, roomId);
+                stmt.setInt(2, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readMessage(rs, roomId));
+                    }
+                }
+                return null;
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ARCHIVE, start);
+        }
+        return rows;
+    }
+
+    @Override
+    public int deleteMessagesThrough(int roomId, long lastId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dbPool.execute(conn -> {
+                PreparedStatement stmt = conn.prepare("DELETE FROM messages WHERE room_id = ? AND id <= ?");
+                stmt.setInt(1, roomId);
+                stmt.setLong(2, lastId);
+                return stmt.executeUpdate();
+            });
+        } finally {
+            ServerMetrics.dbCallTook(ServerMetrics.DbQuery.ARCHIVE, start);
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, ChatMessage message) throws SQLException {
+        stmt.setLong(1, message.id());
+        stmt.setInt(2, message.roomId());
+        stmt.setInt(3, message.senderId());
+        stmt.setString(4, message.text());
+        stmt.setTimestamp(5, new Timestamp(message.timestampMillis()));
+    }
+
+    // Gönderen adı tabloda yok; sunucu kullanıcı önbelleğinden çözer
+    private static ChatMessage readMessage(ResultSet rs, int roomId) throws SQLException {
+        return new ChatMessage(
+                rs.getLong("id"),
+                roomId,
+                rs.getInt("sender_id"),
+                null,
+                rs.getString("message"),
+                rs.getTimestamp("date_time").getTime()
+        );
+    }
+
+    private static RoomDirectory.RoomInfo readRoom(ResultSet rs) throws SQLException {
+        return new RoomDirectory.RoomInfo(
+                rs.getInt("id"),
+                rs.getString("room_name"),
+                rs.getInt("creator_id")
+        );
+    }
+}
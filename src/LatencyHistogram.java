@@ -0,0 +1,173 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Gecikme histogramı (HdrHistogram düzeninde, bağımlılıksız).
+// Değerler log-lineer kovalara yazılır: 0-255 arası birebir, üstünde her ikinin kuvveti aralığı 128 eşit kovaya bölünür.
+// Böylece her değer %1'den küçük göreli hatayla ve sabit bellekle (birkaç bin sayaç) tutulur.
+// Kayıt kilitsizdir ve şeritlidir (striped): her thread kendi şeridindeki sayacı artırır, aynı kovaya yazan thread'ler
+// aynı önbellek satırı için yarışmaz. Okuma (yüzdelik hesabı) tüm şeritleri toplar. Birim çağırana bağlıdır.
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS; // 128
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF * 2; // 256
+
+    // Şerit sayısı: çekirdek sayısına yakın ikinin kuvveti (en fazla 8)
+    private static final int STRIPES = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final long highestTrackableValue;
+    private final int bucketCount;
+    private final AtomicLongArray[] stripes;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    // Bu değerin üstündeki kayıtlar bu değere kırpılır (en büyük değer ayrıca tam olarak tutulur)
+    LatencyHistogram(long highestTrackableValue) {
+        this.highestTrackableValue = Math.max(LINEAR_LIMIT, highestTrackableValue);
+        this.bucketCount = indexOf(this.highestTrackableValue) + 1;
+        this.stripes = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(bucketCount);
+        }
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        AtomicLongArray counts = stripes[(int) Thread.currentThread().threadId() & (STRIPES - 1)];
+        counts.incrementAndGet(indexOf(Math.min(value, highestTrackableValue)));
+        totalCount.increment();
+        totalSum.add(value);
+        // En büyük değer nadiren değişir; önce okunur, yalnızca gerekirse CAS yapılır
+        if (value > maxValue.get()) {
+            maxValue.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    // Isınma bittiğinde sayaçları sıfırlar. Eş zamanlı kayıtlarla atomik değildir; sınırdaki birkaç kayıt iki tarafa da düşebilir.
+    void reset() {
+        for (AtomicLongArray counts : stripes) {
+            for (int i = 0; i < bucketCount; i++) {
+                counts.set(i, 0);
+            }
+        }
+        totalCount.reset();
+        totalSum.reset();
+        maxValue.set(0);
+    }
+
+    long count() {
+        return totalCount.sum();
+    }
+
+    long max() {
+        return maxValue.get();
+    }
+
+    double mean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    // Kayıtların en az yüzde percentile'ının eşit veya altında kaldığı değer (kovanın en üst değeri, HdrHistogram gibi)
+    long valueAtPercentile(double percentile) {
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += countAt(i);
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    // HdrHistogram'ın outputPercentileDistribution biçiminde yüzdelik dağılımı yazar.
+    // Yüzdelikler 100'e kalan uzaklık her yarılandığında 5 adımla sıklaşır (50, 75, 87.5, ... 99, 99.9 ...).
+    // scale: değerlerin bölüneceği sayı (örneğin mikrosaniyeyi milisaniye göstermek için 1000).
+    void outputPercentileDistribution(PrintStream out, double scale) {
+        long count = totalCount.sum();
+        out.println(String.format("%12s %14s %10s %14s%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        if (count == 0) {
+            return;
+        }
+        double level = 0;
+        while (true) {
+            long value = valueAtPercentile(level);
+            long atOrBelow = countAtOrBelow(value);
+            double reached = 100.0 * atOrBelow / count;
+            if (reached >= 100.0) {
+                break;
+            }
+            out.println(String.format("%12.3f %2.12f %10d %14.2f", value / scale, level / 100.0, atOrBelow, 1 / (1 - level / 100.0)));
+            int halvings = (int) (Math.log(100.0 / (100.0 - level)) / Math.log(2));
+            level += 100.0 / (5 * Math.pow(2, halvings + 1));
+        }
+        out.println(String.format("%12.3f %2.12f %10d", max() / scale, 1.0, count));
+
+        double mean = mean();
+        double variance = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long c = countAt(i);
+            if (c > 0) {
+                double mid = (lowestValueIn(i) + highestValueIn(i)) / 2.0;
+                variance += c * (mid - mean) * (mid - mean);
+            }
+        }
+        double stdDeviation = Math.sqrt(variance / count);
+        out.println(String.format("#[Mean    = %12.3f, StdDeviation   = %12.3f]", mean / scale, stdDeviation / scale));
+        out.println(String.format("#[Max     = %12.3f, Total count    = %12d]", max() / scale, count));
+        out.println(String.format("#[Buckets = %12d, SubBuckets     = %12d]", bucketCount, SUB_BUCKET_HALF));
+    }
+
+    private long countAtOrBelow(long value) {
+        long seen = 0;
+        int last = indexOf(Math.min(value, highestTrackableValue));
+        for (int i = 0; i <= last; i++) {
+            seen += countAt(i);
+        }
+        return seen;
+    }
+
+    private long countAt(int index) {
+        long count = 0;
+        for (AtomicLongArray counts : stripes) {
+            count += counts.get(index);
+        }
+        return count;
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        // value >> shift, [128, 256) aralığına düşer
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_HALF + (int) ((value >> shift) - SUB_BUCKET_HALF);
+    }
+
+    private static long lowestValueIn(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_HALF + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return sub << shift;
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_HALF + 1;
+        return lowestValueIn(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,20 @@
+// Bir gecikme histogramının JMX arayüzü (bkz. ServerMetrics). Değerler mikrosaniyedir, yüzdelikler %1'den küçük hatayla hesaplanır.
+public interface LatencyMXBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    // Sayaçları sıfırlar (örneğin bir yük testinden önce)
+    void reset();
+}
@@ -0,0 +1,298 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Arayüzsüz yük testi istemcisi. ChatRoomScreen ile aynı protokolü konuşan binlerce sanal kullanıcı açar,
+// belirlenen toplam hızda mesaj gönderir ve mesajın odadaki diğer üyelere ulaşma süresini (uçtan uca yayın gecikmesi) ölçer.
+// Gönderici ve alıcılar aynı JVM'de olduğu için mesajın içine System.nanoTime() yazılır ve saat farkı sorunu olmaz.
+// Gecikme mesajın gönderilmesi planlanan andan ölçülür (gerçekten gönderildiği andan değil): sunucu veya soket yavaşlayıp
+// gönderici geride kalırsa bekleme de gecikmeye dahil olur (coordinated omission düzeltmesi).
+// Odalar ve kullanıcılar veritabanında bulunmalıdır; kullanıcı id'leri load.firstUserId'den başlayarak sırayla verilir.
+//
+// Örnek: java -Dload.users=2000 -Dload.rooms=1,2,3,4 -Dload.rate=5000 -Dload.durationSec=60 LoadTestClient
+public final class LoadTestClient {
+
+    private static final String HOST = System.getProperty("load.host", "localhost");
+    private static final int PORT = Integer.getInteger("load.port", 9091);
+    private static final int USERS = Math.max(1, Integer.getInteger("load.users", 1000));
+    // Kullanıcılar bu odalara sırayla dağıtılır
+    private static final int[] ROOMS = parseRooms(System.getProperty("load.rooms", "1"));
+    private static final int FIRST_USER_ID = Integer.getInteger("load.firstUserId", 1);
+    // Tüm kullanıcılar toplamında saniyedeki mesaj sayısı
+    private static final double RATE = Math.max(0.001, Double.parseDouble(System.getProperty("load.rate", "1000")));
+    private static final int MESSAGE_BYTES = Math.max(32, Integer.getInteger("load.messageBytes", 64));
+    private static final int WARMUP_SEC = Math.max(0, Integer.getInteger("load.warmupSec", 10));
+    private static final int DURATION_SEC = Math.max(1, Integer.getInteger("load.durationSec", 60));
+    // "binary" (varsayılan) veya "text"; binary modunda load.deflate=true ile sıkıştırma da istenebilir
+    private static final boolean BINARY = !"text".equalsIgnoreCase(System.getProperty("load.protocol", "binary"));
+    private static final boolean DEFLATE = Boolean.getBoolean("load.deflate");
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    // Önceki çalıştırmaların geçmişten gelen mesajları (başka bir JVM'in nanoTime değerleri) ölçüme karışmasın
+    private static final long RUN_ID = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private static final String MARKER = ": LT " + RUN_ID + " ";
+
+    // Gecikmeler mikrosaniye olarak tutulur (en fazla 1 saat)
+    private static final LatencyHistogram latency = new LatencyHistogram(TimeUnit.HOURS.toMicros(1));
+    private static final LongAdder sent = new LongAdder();
+    private static final LongAdder received = new LongAdder();
+    private static final LongAdder sendErrors = new LongAdder();
+    private static volatile boolean sending = true;
+
+    private LoadTestClient() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Yük testi: " + USERS + " kullanıcı, " + ROOMS.length + " oda, toplam " + RATE + " mesaj/sn, "
+                + (BINARY ? (DEFLATE ? "binary+deflate" : "binary") : "text") + " protokol, " + HOST + ":" + PORT);
+
+        List<SimulatedUser> users = new ArrayList<>(USERS);
+        long connectStart = System.nanoTime();
+        int failed = 0;
+        for (int i = 0; i < USERS; i++) {
+            SimulatedUser user = new SimulatedUser(FIRST_USER_ID + i, ROOMS[i % ROOMS.length]);
+            try {
+                user.connect();
+                users.add(user);
+            } catch (IOException e) {
+                failed++;
+                if (failed <= 5) {
+                    System.err.println("Bağlantı kurulamadı (kullanıcı " + user.userId + "): " + e.getMessage());
+                }
+            }
+        }
+        System.out.printf("%d bağlantı %.1f sn'de kuruldu, %d başarısız.%n",
+                users.size(), (System.nanoTime() - connectStart) / 1e9, failed);
+        if (users.isEmpty()) {
+            return;
+        }
+
+        // Her kullanıcı eşit aralıklarla gönderir; başlangıçlar aralığa yayılır, böylece toplam hız düzgün olur
+        long intervalNanos = (long) (users.size() * 1e9 / RATE);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        for (int i = 0; i < users.size(); i++) {
+            SimulatedUser user = users.get(i);
+            long firstSend = start + intervalNanos * i / users.size();
+            Thread.ofVirtual().name("yuk-gonderici-" + user.userId).start(() -> user.sendLoop(firstSend, intervalNanos));
+        }
+
+        long expectedFanOut = expectedFanOut(users);
+        report("ısınma", WARMUP_SEC);
+        latency.reset();
+        long sentBefore = sent.sum();
+        long receivedBefore = received.sum();
+        long measureStart = System.nanoTime();
+        report("ölçüm", DURATION_SEC);
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+        long sentCount = sent.sum() - sentBefore;
+        long receivedCount = received.sum() - receivedBefore;
+
+        sending = false;
+        // Yoldaki mesajların ulaşması için kısa bir bekleme
+        Thread.sleep(1000);
+        for (SimulatedUser user : users) {
+            user.close();
+        }
+
+        System.out.println();
+        System.out.printf("Gönderilen: %d (%.1f mesaj/sn), hedef %.1f mesaj/sn, gönderim hatası: %d%n",
+                sentCount, sentCount / seconds, RATE, sendErrors.sum());
+        System.out.printf("Teslim edilen: %d (%.1f teslim/sn), beklenen yaklaşık %d (mesaj başına ortalama %.1f alıcı)%n",
+                receivedCount, receivedCount / seconds, Math.round(sentCount * (double) expectedFanOut / users.size()),
+                (double) expectedFanOut / users.size());
+        System.out.printf("Gecikme (ms): p50=%.3f p99=%.3f p999=%.3f max=%.3f%n",
+                latency.valueAtPercentile(50) / 1000.0, latency.valueAtPercentile(99) / 1000.0,
+                latency.valueAtPercentile(99.9) / 1000.0, latency.max() / 1000.0);
+        System.out.println();
+        latency.outputPercentileDistribution(System.out, 1000.0);
+        System.exit(0);
+    }
+
+    // Her saniye bir ilerleme satırı yazar
+    private static void report(String phase, int seconds) throws InterruptedException {
+        long lastSent = sent.sum();
+        long lastReceived = received.sum();
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long nowSent = sent.sum();
+            long nowReceived = received.sum();
+            System.out.printf("[%s %3d sn] gönderilen/sn=%d teslim/sn=%d p50=%.3fms p99=%.3fms p999=%.3fms%n",
+                    phase, s, nowSent - lastSent, nowReceived - lastReceived,
+                    latency.valueAtPercentile(50) / 1000.0, latency.valueAtPercentile(99) / 1000.0,
+                    latency.valueAtPercentile(99.9) / 1000.0);
+            lastSent = nowSent;
+            lastReceived = nowReceived;
+        }
+    }
+
+    // Her kullanıcının bir mesajının ulaşacağı alıcı sayılarının toplamı (kendi odasındaki diğer üyeler)
+    private static long expectedFanOut(List<SimulatedUser> users) {
+        Map<Integer, Integer> roomSizes = new HashMap<>();
+        for (SimulatedUser user : users) {
+            roomSizes.merge(user.roomId, 1, Integer::sum);
+        }
+        long total = 0;
+        for (SimulatedUser user : users) {
+            total += roomSizes.get(user.roomId) - 1;
+        }
+        return total;
+    }
+
+    private static int[] parseRooms(String value) {
+        String[] parts = value.split(",");
+        int[] rooms = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            rooms[i] = Integer.parseInt(parts[i].trim());
+        }
+        return rooms;
+    }
+
+    // Gelen sohbet satırı bu çalıştırmanın bir ölçüm mesajıysa gecikmesini kaydeder ("<ad>: LT <runId> <nanoTime> ...")
+    private static void onChatLine(String line, long now) {
+        int at = line.indexOf(MARKER);
+        if (at < 0) {
+            return;
+        }
+        int from = at + MARKER.length();
+        int to = line.indexOf(' ', from);
+        long sentAt = Long.parseLong(to < 0 ? line.substring(from) : line.substring(from, to));
+        received.increment();
+        latency.record(TimeUnit.NANOSECONDS.toMicros(now - sentAt));
+    }
+
+    private static final class SimulatedUser {
+
+        private final int userId;
+        private final int roomId;
+        // Küme modunda sunucu REDIRECT ile başka düğüme yönlendirebilir; bağlantı yenilenince gönderici yeni akışları görür
+        private volatile Socket socket;
+        private volatile DataOutputStream frameOut;
+        private volatile PrintWriter lineOut;
+
+        SimulatedUser(int userId, int roomId) {
+            this.userId = userId;
+            this.roomId = roomId;
+        }
+
+        void connect() throws IOException {
+            connect(HOST, PORT);
+        }
+
+        private void connect(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            OutputStream output = socket.getOutputStream();
+            String username = "yuk" + userId;
+            if (BINARY) {
+                output.write(((DEFLATE ? "HELLO delta binary deflate" : "HELLO delta binary") + "\n").getBytes(StandardCharsets.UTF_8));
+                frameOut = new DataOutputStream(new BufferedOutputStream(output));
+                BinaryFrames.write(frameOut, BinaryFrames.JOIN, roomId, 0, BinaryFrames.joinPayload(userId, username));
+            } else {
+                lineOut = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+                lineOut.println("HELLO delta");
+                lineOut.println(userId);
+                lineOut.println(username);
+                lineOut.println(roomId);
+            }
+            Thread.ofVirtual().name("yuk-okuyucu-" + userId).start(this::readLoop);
+        }
+
+        private void readLoop() {
+            try {
+                if (BINARY) {
+                    try (BinaryFrames.Reader frames = new BinaryFrames.Reader(
+                            new DataInputStream(new BufferedInputStream(socket.getInputStream())), MAX_FRAME_BYTES)) {
+                        BinaryFrames.Frame frame;
+                        while ((frame = frames.next()) != null) {
+                            if (frame.opcode == BinaryFrames.CHAT) {
+                                onChatLine(frame.text, System.nanoTime());
+                            } else if (frame.opcode == BinaryFrames.CONTROL && frame.text.startsWith("ROOM_NOT_FOUND")) {
+                                System.err.println("Oda bulunamadı: " + roomId);
+                            } else if (frame.opcode == BinaryFrames.CONTROL && frame.text.startsWith("REDIRECT ")) {
+                                redirect(frame.text);
+                                return;
+                            }
+                        }
+                    }
+                } else {
+                    BufferedReader lines = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        if (line.startsWith("REDIRECT ")) {
+                            redirect(line);
+                            return;
+                        }
+                        onChatLine(line, System.nanoTime());
+                    }
+                }
+            } catch (IOException e) {
+                if (sending) {
+                    System.err.println("Bağlantı koptu (kullanıcı " + userId + "): " + e.getMessage());
+                }
+            }
+        }
+
+        // "REDIRECT <host:port>": oda başka düğümde, aynı el sıkışmayla oraya bağlanılır (yeni okuyucu thread'i başlar)
+        private void redirect(String line) throws IOException {
+            String address = line.substring(9).trim();
+            int colon = address.lastIndexOf(':');
+            socket.close();
+            connect(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        }
+
+        // Planlanan anlara göre gönderir. Gönderici geride kaldıysa bekleme yapmadan yetişmeye çalışır,
+        // mesajdaki zaman yine planlanan andır.
+        void sendLoop(long firstSend, long intervalNanos) {
+            String padding = "x".repeat(MESSAGE_BYTES);
+            long next = firstSend;
+            while (sending) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                String text = "LT " + RUN_ID + " " + next + " " + padding;
+                try {
+                    if (BINARY) {
+                        BinaryFrames.write(frameOut, BinaryFrames.CHAT, roomId, 0, text);
+                    } else {
+                        lineOut.println(text);
+                        if (lineOut.checkError()) {
+                            throw new IOException("yazılamadı");
+                        }
+                    }
+                    sent.increment();
+                } catch (IOException e) {
+                    sendErrors.increment();
+                    return;
+                }
+                next += intervalNanos;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // kapanırken önemsiz
+            }
+        }
+    }
+}
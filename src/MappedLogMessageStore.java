@@ -0,0 +1,556 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+// Mesajları oda başına, yalnızca sona eklenen (append-only) ve bölümlere (segment) ayrılmış dosyalarda tutan depo (-Dchat.store=log).
+// Yoğun odalarda her mesaj için MySQL satırı eklemek yerine kayıt, belleğe eşlenmiş (mmap) dosyanın sonuna kopyalanır.
+// Oda üst bilgileri (sahip, şifre) bu motorda tutulmaz; rooms deposuna (JDBC veya bellek) devredilir.
+//
+// Dizin düzeni: <dizin>/room-<id>/<ilk mesaj id'si, 20 hane>.log ve kapanmış bölümler için aynı adlı .idx
+// Kayıt: [uzunluk int32][CRC32C int32][id int64][gönderen id int32][zaman int64][ad uzunluğu int16][ad][metin]
+//        Uzunluk ve CRC, kendilerinden sonraki gövdeyi kapsar. Bölüm dosyası önceden boyutlandırılır, sıfırla dolu kısım boş demektir.
+//
+// Seyrek dizin: her bölümde ilk kayıt ve yaklaşık her INDEX_INTERVAL_BYTES baytta bir kayıt (id -> konum) dizine girer.
+// İmleçli okuma dizinde ikili arama yapar ve yalnızca imlecin hemen önündeki aralığı sırayla okur; son sayfa (katılma) için de aynısı geçerlidir.
+// Kurtarma: açılışta kapanmış bölümlerin dizini .idx dosyasından okunur, etkin (son) bölüm baştan taranır. CRC'si tutmayan,
+// sınırı aşan veya id sırası bozuk ilk kayıtta durulur; çökmede yarım yazılmış kayıt ve ardındaki her şey atılır.
+// Saklama: oda başına en fazla maxSegments bölüm tutulur (0: sınırsız), bölüm dolup yenisi açılınca en eskiler silinir.
+// Eşlenmiş tamponlar Java'da açıkça bırakılamaz; silinen bölümün belleği çöp toplayıcı tamponu topladığında geri verilir.
+final class MappedLogMessageStore implements MessageStore {
+
+    private static final int RECORD_HEADER_BYTES = 4 + 4; // uzunluk + CRC
+    private static final int FIXED_BODY_BYTES = 8 + 4 + 8 + 2; // id + gönderen + zaman + ad uzunluğu
+    private static final int INDEX_INTERVAL_BYTES = 4 * 1024;
+    private static final int INDEX_MAGIC = 0x43484958; // "CHIX"
+
+    private final Path directory;
+    private final MessageStore rooms;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final boolean fsync;
+    private final Map<Integer, RoomLog> logs = new ConcurrentHashMap<>();
+
+    MappedLogMessageStore(Path directory, MessageStore rooms, int segmentBytes, int maxSegments, boolean fsync) {
+        this.directory = directory;
+        this.rooms = rooms;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> roomDirs = Files.newDirectoryStream(directory, "room-*")) {
+                for (Path roomDir : roomDirs) {
+                    int roomId = Integer.parseInt(roomDir.getFileName().toString().substring("room-".length()));
+                    RoomLog log = new RoomLog(roomId, roomDir);
+                    log.recover();
+                    logs.put(roomId, log);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Mesaj günlüğü açılamadı: " + directory, e);
+        }
+        System.out.println("Mesaj deposu: günlük (" + directory.toAbsolutePath() + ", " + logs.size() + " oda).");
+    }
+
+    @Override
+    public void append(List<ChatMessage> messages) throws SQLException {
+        // Batch'in dokunduğu odalar sonunda bir kez diske zorlanır (grup commit)
+        Map<RoomLog, Boolean> touched = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            touched.put(appendRecord(message), Boolean.TRUE);
+        }
+        if (fsync) {
+            for (RoomLog log : touched.keySet()) {
+                log.force();
+            }
+        }
+    }
+
+    @Override
+    public void append(ChatMessage message) throws SQLException {
+        RoomLog log = appendRecord(message);
+        if (fsync) {
+            log.force();
+        }
+    }
+
+    @Override
+    public List<ChatMessage> readBefore(int roomId, long beforeId, int limit) {
+        RoomLog log = logs.get(roomId);
+        return log == null ? List.of() : log.readBefore(beforeId, limit);
+    }
+
+    @Override
+    public long maxMessageId() {
+        long max = 0;
+        for (RoomLog log : logs.values()) {
+            max = Math.max(max, log.lastId());
+        }
+        return max;
+    }
+
+    @Override
+    public boolean tombstoneRoom(int roomId) throws SQLException {
+        return rooms.tombstoneRoom(roomId);
+    }
+
+    // Parça, odanın en eski bölüm dosyasıdır (bölüm boyutuyla sınırlı); limit kullanılmaz.
+    @Override
+    public int deleteRoomMessages(int roomId, int limit) throws SQLException {
+        RoomLog log = logs.get(roomId);
+        if (log == null) {
+            return 0;
+        }
+        try {
+            return log.deleteOldestSegment();
+        } catch (IOException e) {
+            throw new SQLException("Oda günlüğünün bölümü silinemedi: " + roomId, e);
+        }
+    }
+
+    // Önce günlük, sonra oda silinir; arada kapanan sunucu açılışta odayı işaretli bulur ve silmeyi tamamlar.
+    @Override
+    public void purgeRoom(int roomId) throws SQLException {
+        RoomLog log = logs.remove(roomId);
+        if (log != null) {
+            try {
+                log.delete();
+            } catch (IOException e) {
+                throw new SQLException("Oda günlüğü silinemedi: " + roomId, e);
+            }
+        }
+        rooms.purgeRoom(roomId);
+    }
+
+    @Override
+    public List<Integer> tombstonedRooms() throws SQLException {
+        return rooms.tombstonedRooms();
+    }
+
+    @Override
+    public RoomDirectory.RoomInfo findRoom(int roomId) throws SQLException {
+        return rooms.findRoom(roomId);
+    }
+
+    // Günlük deposunda mesajlar arşive taşınmaz: eski bölümler chat.store.log.maxSegments ile atılır. Saklama görevi burada oda bulmaz.
+    @Override
+    public List<Integer> roomsWithMessages() {
+        return List.of();
+    }
+
+    @Override
+    public long countMessages(int roomId) {
+        return 0;
+    }
+
+    @Override
+    public List<ChatMessage> readOldest(int roomId, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public int deleteMessagesThrough(int roomId, long lastId) {
+        return 0;
+    }
+
+    private RoomLog appendRecord(ChatMessage message) throws SQLException {
+        RoomLog log = logs.computeIfAbsent(message.roomId(), id -> new RoomLog(id, directory.resolve("room-" + id)));
+        try {
+            log.append(message);
+        } catch (IOException e) {
+            throw new SQLException("Mesaj günlüğe yazılamadı (oda " + message.roomId() + "): " + e.getMessage(), e);
+        }
+        return log;
+    }
+
+    private static byte[] encode(ChatMessage message) {
+        byte[] name = message.senderName() == null ? new byte[0] : message.senderName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > Short.MAX_VALUE) {
+            name = Arrays.copyOf(name, Short.MAX_VALUE);
+        }
+        byte[] text = message.text().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_BYTES + name.length + text.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0); // CRC, gövde yazıldıktan sonra
+        record.putLong(message.id());
+        record.putInt(message.senderId());
+        record.putLong(message.timestampMillis());
+        record.putShort((short) name.length);
+        record.put(name);
+        record.put(text);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    // Bir odanın bölümleri. Ekleme (yalnızca yazıcı thread'i) yazma kilidiyle, okumalar (oda şeritleri) okuma kilidiyle yapılır.
+    private final class RoomLog {
+
+        private final int roomId;
+        private final Path roomDir;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<Segment> segments = new ArrayList<>(); // ilk id'ye göre sıralı; sonuncusu etkin bölüm
+
+        RoomLog(int roomId, Path roomDir) {
+            this.roomId = roomId;
+            this.roomDir = roomDir;
+        }
+
+        void recover() throws IOException {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(roomDir, "*.log")) {
+                stream.forEach(files::add);
+            }
+            files.sort(null); // ad, 20 haneli ilk id olduğu için sözlük sırası id sırasıdır
+            for (int i = 0; i < files.size(); i++) {
+                boolean active = i == files.size() - 1;
+                segments.add(Segment.open(roomId, files.get(i), active));
+            }
+        }
+
+        void append(ChatMessage message) throws IOException {
+            byte[] record = encode(message);
+            if (record.length > segmentBytes) {
+                throw new IOException("Kayıt bölüm boyutundan büyük: " + record.length);
+            }
+            lock.writeLock().lock();
+            try {
+                Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (active == null || !active.fits(record.length)) {
+                    active = roll(active, message.id());
+                }
+                active.write(record, message.id());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Etkin bölümü kapatır ve bu id ile başlayan yeni bir bölüm açar; saklama sınırını aşan en eski bölümleri siler.
+        private Segment roll(Segment active, long firstId) throws IOException {
+            if (active != null) {
+                active.seal();
+            }
+            Files.createDirectories(roomDir);
+            Segment segment = Segment.create(roomId, roomDir.resolve(String.format("%020d.log", firstId)), segmentBytes);
+            segments.add(segment);
+            while (maxSegments > 0 && segments.size() > maxSegments) {
+                segments.remove(0).deleteFiles();
+            }
+            return segment;
+        }
+
+        void force() {
+            lock.readLock().lock();
+            try {
+                if (!segments.isEmpty()) {
+                    segments.get(segments.size() - 1).force();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long lastId() {
+            lock.readLock().lock();
+            try {
+                for (int i = segments.size() - 1; i >= 0; i--) {
+                    if (segments.get(i).lastId > 0) {
+                        return segments.get(i).lastId;
+                    }
+                }
+                return 0;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // İmlecin önündeki aralıklar sondan başa doğru okunur, her aralık kendi içinde sıralı okunur.
+        List<ChatMessage> readBefore(long beforeId, int limit) {
+            ArrayDeque<ChatMessage> page = new ArrayDeque<>(limit);
+            lock.readLock().lock();
+            try {
+                for (int s = segments.size() - 1; s >= 0 && page.size() < limit; s--) {
+                    Segment segment = segments.get(s);
+                    if (segment.indexCount == 0 || segment.indexIds[0] >= beforeId) {
+                        continue;
+                    }
+                    int k = segment.lastIndexBefore(beforeId);
+                    int chunkEnd = k + 1 < segment.indexCount ? segment.indexPositions[k + 1] : segment.end;
+                    while (k >= 0 && page.size() < limit) {
+                        List<ChatMessage> chunk = segment.scan(segment.indexPositions[k], chunkEnd, beforeId);
+                        for (int i = chunk.size() - 1; i >= 0 && page.size() < limit; i--) {
+                            page.addFirst(chunk.get(i));
+                        }
+                        chunkEnd = segment.indexPositions[k];
+                        k--;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return new ArrayList<>(page);
+        }
+
+        // En eski bölümü siler ve içindeki kayıt sayısını döner; boş bölümler atlanır. Bölüm kalmadıysa 0.
+        int deleteOldestSegment() throws IOException {
+            lock.writeLock().lock();
+            try {
+                while (!segments.isEmpty()) {
+                    Segment oldest = segments.remove(0);
+                    int records = oldest.recordCount();
+                    oldest.deleteFiles();
+                    if (records > 0) {
+                        return records;
+                    }
+                }
+                return 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void delete() throws IOException {
+            lock.writeLock().lock();
+            try {
+                for (Segment segment : segments) {
+                    segment.deleteFiles();
+                }
+                segments.clear();
+                Files.deleteIfExists(roomDir);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Tek bir bölüm dosyası ve seyrek dizini. Okuma ve yazma mutlak konumlarla yapılır, tamponun konumu paylaşılmaz.
+    private static final class Segment {
+
+        private final int roomId;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int end; // geçerli verinin sonu (bir sonraki kaydın konumu)
+        private long lastId;
+        private long[] indexIds = new long[64];
+        private int[] indexPositions = new int[64];
+        private int indexCount;
+        private int dirtyFrom = -1; // diske zorlanmamış ilk bayt
+
+        private Segment(int roomId, Path file, MappedByteBuffer buffer) {
+            this.roomId = roomId;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(int roomId, Path file, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(roomId, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        // Etkin bölüm yazılabilir eşlenir ve taranır. Kapanmış bölümün dizini .idx'ten okunur, yoksa (veya bozuksa) bölüm taranır.
+        static Segment open(int roomId, Path file, boolean active) throws IOException {
+            Segment segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileChannel.MapMode mode = active ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+                segment = new Segment(roomId, file, channel.map(mode, 0, channel.size()));
+            }
+            if (active || !segment.loadIndex()) {
+                segment.scanAll(active);
+            }
+            return segment;
+        }
+
+        boolean fits(int recordLength) {
+            return end + recordLength <= buffer.capacity();
+        }
+
+        void write(byte[] record, long id) {
+            if (indexCount == 0 || end - indexPositions[indexCount - 1] >= INDEX_INTERVAL_BYTES) {
+                addIndex(id, end);
+            }
+            buffer.put(end, record);
+            if (dirtyFrom < 0) {
+                dirtyFrom = end;
+            }
+            end += record.length;
+            lastId = id;
+        }
+
+        void force() {
+            if (dirtyFrom >= 0) {
+                buffer.force(dirtyFrom, end - dirtyFrom);
+                dirtyFrom = -1;
+            }
+        }
+
+        // Bölüm doldu: veriyi diske zorlar ve dizini yanına yazar; açılışta bu bölüm yeniden taranmaz.
+        void seal() throws IOException {
+            force();
+            ByteBuffer index = ByteBuffer.allocate(4 + 4 + 8 + 4 + indexCount * (8 + 4));
+            index.putInt(INDEX_MAGIC).putInt(end).putLong(lastId).putInt(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                index.putLong(indexIds[i]).putInt(indexPositions[i]);
+            }
+            Path indexFile = indexFile();
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            Files.write(temp, index.array());
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Dizindeki, id'si beforeId'den küçük son girdi (ilk kayıt her zaman dizindedir)
+        int lastIndexBefore(long beforeId) {
+            int low = 0;
+            int high = indexCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (indexIds[mid] < beforeId) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // [from, to) aralığındaki, id'si beforeId'den küçük kayıtlar (sıralı okuma)
+        List<ChatMessage> scan(int from, int to, long beforeId) {
+            List<ChatMessage> records = new ArrayList<>();
+            int position = from;
+            while (position < to) {
+                int bodyLength = buffer.getInt(position);
+                int body = position + RECORD_HEADER_BYTES;
+                long id = buffer.getLong(body);
+                if (id >= beforeId) {
+                    break;
+                }
+                records.add(decode(body, bodyLength));
+                position = body + bodyLength;
+            }
+            return records;
+        }
+
+        // Kayıtlar yalnızca uzunluk alanlarından atlanarak sayılır (doğrulama ve çözme yapılmaz)
+        int recordCount() {
+            int count = 0;
+            for (int position = 0; position < end; position += RECORD_HEADER_BYTES + buffer.getInt(position)) {
+                count++;
+            }
+            return count;
+        }
+
+        void deleteFiles() throws IOException {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(indexFile());
+        }
+
+        private ChatMessage decode(int body, int bodyLength) {
+            long id = buffer.getLong(body);
+            int senderId = buffer.getInt(body + 8);
+            long timestamp = buffer.getLong(body + 12);
+            int nameLength = buffer.getShort(body + 20);
+            byte[] name = new byte[nameLength];
+            buffer.get(body + FIXED_BODY_BYTES, name);
+            byte[] text = new byte[bodyLength - FIXED_BODY_BYTES - nameLength];
+            buffer.get(body + FIXED_BODY_BYTES + nameLength, text);
+            // Ad yazılmadıysa null döner, sunucu kullanıcı önbelleğinden çözer
+            String senderName = nameLength == 0 ? null : new String(name, StandardCharsets.UTF_8);
+            return new ChatMessage(id, roomId, senderId, senderName, new String(text, StandardCharsets.UTF_8), timestamp);
+        }
+
+        // Tüm kayıtları CRC ile doğrulayarak tarar ve dizini kurar. İlk geçersiz kayıtta durur.
+        // Etkin bölümde geçersiz kaydın ardında veri kaldıysa sıfırlanır; aksi halde sonraki bir kurtarma, üzerine yazılmamış eski kayıtları
+        // geçerli sanabilirdi.
+        private void scanAll(boolean active) {
+            CRC32C crc = new CRC32C();
+            int position = 0;
+            long previousId = 0;
+            while (position + RECORD_HEADER_BYTES + FIXED_BODY_BYTES <= buffer.capacity()) {
+                int bodyLength = buffer.getInt(position);
+                int body = position + RECORD_HEADER_BYTES;
+                if (bodyLength < FIXED_BODY_BYTES || body + bodyLength > buffer.capacity()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice(body, bodyLength));
+                long id = buffer.getLong(body);
+                if ((int) crc.getValue() != buffer.getInt(position + 4) || id <= previousId) {
+                    break;
+                }
+                if (indexCount == 0 || position - indexPositions[indexCount - 1] >= INDEX_INTERVAL_BYTES) {
+                    addIndex(id, position);
+                }
+                previousId = id;
+                position = body + bodyLength;
+            }
+            end = position;
+            lastId = previousId;
+            if (active && end + 4 <= buffer.capacity() && buffer.getInt(end) != 0) {
+                System.err.println("Günlükte bozuk veya yarım kayıt atıldı: " + file + " @" + end);
+                for (int i = end; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+            }
+        }
+
+        private boolean loadIndex() throws IOException {
+            Path indexFile = indexFile();
+            if (!Files.exists(indexFile)) {
+                return false;
+            }
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            if (index.remaining() < 20 || index.getInt() != INDEX_MAGIC) {
+                return false;
+            }
+            int savedEnd = index.getInt();
+            long savedLastId = index.getLong();
+            int count = index.getInt();
+            if (savedEnd > buffer.capacity() || count < 0 || index.remaining() != count * (8 + 4)) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                addIndex(index.getLong(), index.getInt());
+            }
+            end = savedEnd;
+            lastId = savedLastId;
+            return true;
+        }
+
+        private void addIndex(long id, int position) {
+            if (indexCount == indexIds.length) {
+                indexIds = Arrays.copyOf(indexIds, indexCount * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+            }
+            indexIds[indexCount] = id;
+            indexPositions[indexCount] = position;
+            indexCount++;
+        }
+
+        private Path indexFile() {
+            String name = file.getFileName().toString();
+            return file.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+        }
+    }
+}
@@ -0,0 +1,403 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+// Saklama süresi dolan mesajların yerel diskteki soğuk arşivi (bkz. MessageRetention).
+// Düzen: <dizin>/room-<id>/<yyyy-MM-dd>.msg.gz; gün, mesajın zaman damgasının UTC tarihidir. Her arşivleme turu günün dosyasına yeni bir
+// gzip üyesi ekler (gzip ardışık üyeleri tek akış olarak okur), dosya yeniden yazılmaz. Kayıt: id, gönderen id, zaman, ad, metin (DataOutput).
+// Okuma isteğe bağlıdır: istemci sıcak tablodaki en eski mesajın da gerisine sayfa isterse gün dosyaları yeniden eskiye doğru taranır.
+// Her oda dizinindeki "index" dosyası gün dosyalarının en küçük ve en büyük id'sini tutar (bellekte de önbelleklenir); okuma, tüm id'leri
+// imleçten büyük olan günleri açmadan atlar. Böylece sayfa derinleştikçe yeni günler tekrar tekrar açılmaz.
+// Aynı mesaj iki kez arşivlenmişse (arşive yazıldıktan sonra tablodan silinemeden kapanma) okumada tekilleştirilir.
+// Arşivlenen en büyük id ayrıca saklanır; sıcak tablo tamamen boşalsa bile sunucu id'leri yeniden kullanmaz.
+final class MessageArchive {
+
+    private static final String SUFFIX = ".msg.gz";
+    private static final String MAX_ID_FILE = "max-id";
+    private static final String INDEX_FILE = "index";
+    // İndekste kaydı olmayan gün dosyası (ör. indeks yazılmadan çökme): id aralığı bilinmez, her okumada açılır
+    private static final long[] UNKNOWN_RANGE = {Long.MIN_VALUE, Long.MAX_VALUE};
+    // Yalnızca GZIPOutputStream'in yazdığı başlık okunur: sihirli sayı, deflate, bayraksız
+    private static final int GZIP_HEADER_BYTES = 10;
+    private static final int GZIP_TRAILER_BYTES = 8;
+
+    private final Path directory;
+    // Yazma (arşivleyici thread'i) ve oda silme (RoomReaper) aynı oda dizinine aynı anda dokunmasın
+    private final Lock writeLock = new ReentrantLock();
+    // Sonu doğrulanmış gün dosyalarının boyu (writeLock altında). Boy değişmediyse dosya her eklemede yeniden taranmaz.
+    private final Map<Path, Long> verifiedLengths = new HashMap<>();
+    // Oda id -> gün dosyası adı -> {en küçük id, en büyük id}. Değiştirilmez kopyalar; yalnızca writeLock altında değiştirilir.
+    private final Map<Integer, NavigableMap<String, long[]>> indexes = new ConcurrentHashMap<>();
+    private volatile long maxArchivedId = -1;
+
+    private final LongAdder archivedCount = new LongAdder();
+    private final LongAdder readCount = new LongAdder();
+
+    MessageArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    static MessageArchive fromConfig() {
+        return new MessageArchive(Path.of(ServerConfig.ARCHIVE_DIR));
+    }
+
+    // Mesajları (bir odanın, id sırasıyla) gün dosyalarına ekler ve diske zorlar. Döndüğünde mesajlar tablodan silinebilir.
+    void append(int roomId, List<ChatMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, List<ChatMessage>> byDay = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            LocalDate day = Instant.ofEpochMilli(message.timestampMillis()).atZone(ZoneOffset.UTC).toLocalDate();
+            byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(message);
+        }
+        writeLock.lock();
+        try {
+            Path roomDir = roomDirectory(roomId);
+            Files.createDirectories(roomDir);
+            TreeMap<String, long[]> index = new TreeMap<>(index(roomId));
+            long maxId = 0;
+            for (Map.Entry<LocalDate, List<ChatMessage>> entry : byDay.entrySet()) {
+                String name = entry.getKey() + SUFFIX;
+                Path file = roomDir.resolve(name);
+                verifiedLengths.put(file, appendMember(file, entry.getValue(), verifiedLengths.getOrDefault(file, -1L)));
+                long dayMin = Long.MAX_VALUE;
+                long dayMax = Long.MIN_VALUE;
+                for (ChatMessage message : entry.getValue()) {
+                    dayMin = Math.min(dayMin, message.id());
+                    dayMax = Math.max(dayMax, message.id());
+                }
+                long[] range = index.get(name);
+                index.put(name, range == null ? new long[] {dayMin, dayMax} : new long[] {Math.min(range[0], dayMin), Math.max(range[1], dayMax)});
+                maxId = Math.max(maxId, dayMax);
+            }
+            // İndeks mesajlar diske yazıldıktan sonra güncellenir; arada çökülürse yeni gün dosyası kayıtsız kalır ve okumada açılır
+            writeIndex(roomDir, index);
+            indexes.put(roomId, Collections.unmodifiableNavigableMap(index));
+            if (maxId > maxMessageId()) {
+                writeMaxId(maxId);
+            }
+            archivedCount.add(messages.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Odanın arşivindeki, beforeId'den küçük id'li en yeni "limit" mesajı eskiden yeniye sıralı döner.
+    // Gün dosyaları yeniden eskiye okunur; en küçük id'si beforeId'den küçük olmayan günler açılmaz, sayfa dolunca daha eski günlere
+    // bakılmaz. Gönderen adı yazılmadıysa null döner.
+    List<ChatMessage> readBefore(int roomId, long beforeId, int limit) throws IOException {
+        NavigableMap<String, long[]> days = index(roomId);
+        if (days.isEmpty()) {
+            return List.of();
+        }
+        readCount.increment();
+        Path roomDir = roomDirectory(roomId);
+        // id -> mesaj; en küçükler atılarak yalnızca en yeni "limit" tanesi tutulur (tekrarlanan id tek kayıt olur)
+        TreeMap<Long, ChatMessage> page = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : days.descendingMap().entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (entry.getValue()[0] >= beforeId) {
+                continue;
+            }
+            TreeMap<Long, ChatMessage> day = new TreeMap<>();
+            readDay(roomDir.resolve(entry.getKey()), roomId, beforeId, limit, day);
+            while (!day.isEmpty() && page.size() < limit) {
+                Map.Entry<Long, ChatMessage> newest = day.pollLastEntry();
+                page.putIfAbsent(newest.getKey(), newest.getValue());
+            }
+        }
+        return new ArrayList<>(page.values());
+    }
+
+    // Arşive yazılmış en büyük mesaj id'si (arşiv boşsa 0)
+    long maxMessageId() throws IOException {
+        long cached = maxArchivedId;
+        if (cached >= 0) {
+            return cached;
+        }
+        try {
+            Path file = directory.resolve(MAX_ID_FILE);
+            cached = Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : 0;
+        } catch (NumberFormatException e) {
+            throw new IOException("Arşivin son mesaj id'si okunamadı: " + e.getMessage(), e);
+        }
+        maxArchivedId = cached;
+        return cached;
+    }
+
+    // Silinen odanın arşivi de silinir
+    void deleteRoom(int roomId) throws IOException {
+        writeLock.lock();
+        try {
+            Path roomDir = roomDirectory(roomId);
+            if (!Files.isDirectory(roomDir)) {
+                return;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(roomDir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(roomDir);
+            verifiedLengths.keySet().removeIf(file -> file.startsWith(roomDir));
+            indexes.remove(roomId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    long getArchivedCount() {
+        return archivedCount.sum();
+    }
+
+    long getReadCount() {
+        return readCount.sum();
+    }
+
+    private Path roomDirectory(int roomId) {
+        return directory.resolve("room-" + roomId);
+    }
+
+    // Odanın gün dosyası indeksi. İlk erişimde diskten okunur (dizin bir kez listelenir), sonra bellekten döner.
+    private NavigableMap<String, long[]> index(int roomId) throws IOException {
+        NavigableMap<String, long[]> cached = indexes.get(roomId);
+        if (cached != null) {
+            return cached;
+        }
+        writeLock.lock();
+        try {
+            cached = indexes.get(roomId);
+            if (cached == null) {
+                cached = Collections.unmodifiableNavigableMap(readIndex(roomDirectory(roomId)));
+                indexes.put(roomId, cached);
+            }
+            return cached;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // "index" satırları: "<gün dosyası> <en küçük id> <en büyük id>". İndekste olmayan gün dosyalarının aralığı bilinmez sayılır.
+    private static TreeMap<String, long[]> readIndex(Path roomDir) throws IOException {
+        TreeMap<String, long[]> index = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(roomDir, "*" + SUFFIX)) {
+            stream.forEach(file -> index.put(file.getFileName().toString(), UNKNOWN_RANGE));
+        } catch (NoSuchFileException e) {
+            return index;
+        }
+        Path indexFile = roomDir.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.trim().split(" ");
+                if (fields.length == 3 && index.containsKey(fields[0])) {
+                    try {
+                        index.put(fields[0], new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+                    } catch (NumberFormatException e) {
+                        System.err.println("Arşiv indeksinde geçersiz satır atlandı: " + roomDir + ": " + line);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private static void writeIndex(Path roomDir, Map<String, long[]> index) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            if (entry.getValue() != UNKNOWN_RANGE) {
+                content.append(entry.getKey()).append(' ').append(entry.getValue()[0]).append(' ').append(entry.getValue()[1]).append('\n');
+            }
+        }
+        Path file = roomDir.resolve(INDEX_FILE);
+        Path temp = roomDir.resolve(INDEX_FILE + ".tmp");
+        Files.writeString(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Dosyaya yeni bir gzip üyesi ekler ve dosyanın yeni boyunu döner. Yazma yarıda kalırsa dosya eski boyuna kesilir.
+    // Sunucu önceki bir yazmanın ortasında çöktüyse dosyanın sonunda yarım bir üye kalmıştır; okuma orada durduğu için ardına eklenen
+    // üyeler görünmez olur, mesajlar ise tablodan silinmiş olur. Bu yüzden ekleme öncesinde dosyanın sonu doğrulanır (verifiedLength
+    // dosyanın bilinen sağlam boyu değilse) ve yarım üye kesilir.
+    private static long appendMember(Path file, List<ChatMessage> messages, long verifiedLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long originalSize = channel.size();
+            if (originalSize != verifiedLength) {
+                long complete = completeLength(channel);
+                if (complete < originalSize) {
+                    System.err.println("Arşiv dosyasının sonundaki yarım veri kesildi: " + file + " (" + (originalSize - complete) + " bayt)");
+                    channel.truncate(complete);
+                    channel.force(false);
+                    originalSize = complete;
+                }
+            }
+            channel.position(originalSize);
+            try {
+                GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip));
+                for (ChatMessage message : messages) {
+                    out.writeLong(message.id());
+                    out.writeInt(message.senderId());
+                    out.writeLong(message.timestampMillis());
+                    writeString(out, message.senderName() == null ? "" : message.senderName());
+                    writeString(out, message.text());
+                }
+                out.flush();
+                gzip.finish();
+                channel.force(false);
+                long size = channel.size();
+                out.close(); // sıkıştırıcının yerel belleğini bırakır (kanal da kapanır)
+                return size;
+            } catch (IOException e) {
+                channel.truncate(originalSize);
+                throw e;
+            }
+        }
+    }
+
+    // Dosyanın başından itibaren eksiksiz (başlığı, sıkıştırılmış verisi ve CRC'si tutan) gzip üyelerinin toplam boyu
+    private static long completeLength(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long complete = 0;
+        Inflater inflater = new Inflater(true);
+        try {
+            ByteBuffer input = ByteBuffer.allocate(8192);
+            byte[] output = new byte[8192];
+            CRC32 crc = new CRC32();
+            while (complete < size) {
+                ByteBuffer header = ByteBuffer.allocate(GZIP_HEADER_BYTES);
+                if (readFully(channel, header, complete) < GZIP_HEADER_BYTES
+                        || (header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b || header.get(2) != 8 || header.get(3) != 0) {
+                    return complete;
+                }
+                inflater.reset();
+                crc.reset();
+                long position = complete + GZIP_HEADER_BYTES;
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        input.clear();
+                        int read = channel.read(input, position);
+                        if (read <= 0) {
+                            return complete;
+                        }
+                        position += read;
+                        inflater.setInput(input.array(), 0, read);
+                    }
+                    int inflated = inflater.inflate(output);
+                    crc.update(output, 0, inflated);
+                    if (inflated == 0 && inflater.needsDictionary()) {
+                        return complete;
+                    }
+                }
+                long end = position - inflater.getRemaining();
+                ByteBuffer trailer = ByteBuffer.allocate(GZIP_TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                if (readFully(channel, trailer, end) < GZIP_TRAILER_BYTES
+                        || (trailer.getInt(0) & 0xffffffffL) != crc.getValue() || trailer.getInt(4) != (int) inflater.getBytesWritten()) {
+                    return complete;
+                }
+                complete = end + GZIP_TRAILER_BYTES;
+            }
+            return complete;
+        } catch (DataFormatException e) {
+            return complete;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    // Sunucu yazma sırasında çöktüyse dosyanın sonunda yarım bir üye kalabilir; okuma orada durur, öncesi kullanılır.
+    // Aynı dosyaya bir sonraki ekleme bu yarım üyeyi önce keser (bkz. appendMember).
+    private static void readDay(Path file, int roomId, long beforeId, int limit, TreeMap<Long, ChatMessage> newest) throws IOException {
+        try (InputStream raw = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new BufferedInputStream(raw))))) {
+            while (true) {
+                long id;
+                try {
+                    id = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                int senderId = in.readInt();
+                long timestamp = in.readLong();
+                String senderName = readString(in);
+                String text = readString(in);
+                if (id < beforeId) {
+                    newest.put(id, new ChatMessage(id, roomId, senderId, senderName.isEmpty() ? null : senderName, text, timestamp));
+                    if (newest.size() > limit) {
+                        newest.pollFirstEntry();
+                    }
+                }
+            }
+        } catch (EOFException | ZipException e) {
+            System.err.println("Arşiv dosyasının sonunda yarım veya bozuk veri atlandı: " + file);
+        }
+    }
+
+    private void writeMaxId(long maxId) throws IOException {
+        Path file = directory.resolve(MAX_ID_FILE);
+        Path temp = file.resolveSibling(MAX_ID_FILE + ".tmp");
+        Files.writeString(temp, Long.toString(maxId));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        maxArchivedId = maxId;
+    }
+
+    // writeUTF 64 KB ile sınırlı ve değiştirilmiş UTF-8 kullanır; uzunluk + düz UTF-8 yazılır
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+// Mesaj saklama politikaları ve süresi dolan mesajları soğuk arşive (MessageArchive) taşıyan arka plan görevi.
+// Eskiden messages tablosu sürekli büyüyordu; geçmiş sorguları ve oda silme her geçen gün daha büyük bir küme üzerinde çalışıyordu.
+// Artık her odanın (varsayılan veya odaya özel) bir politikası vardır: en fazla yaş ve/veya en fazla mesaj sayısı. Görev, odanın en eski
+// mesajlarını parça parça okur; süresi dolan baştaki kısmı önce arşive yazıp diske zorlar, sonra tablodan siler. Sıcak tablo böylece
+// son mesajlarla sınırlı kalır ve veritabanının tampon havuzuna sığar; daha eski sayfalar istenirse arşivden okunur.
+// Küme modunda her düğüm yalnızca kendi odalarını arşivler; arşiv, odanın geçmişini sunan düğümün diskinde durur.
+final class MessageRetention {
+
+    // Bir odanın saklama sınırları; 0: o sınır yok
+    static final class Policy {
+
+        static final Policy NONE = new Policy(0, 0);
+
+        private final long maxAgeMillis;
+        private final long maxCount;
+
+        Policy(long maxAgeMillis, long maxCount) {
+            this.maxAgeMillis = Math.max(0, maxAgeMillis);
+            this.maxCount = Math.max(0, maxCount);
+        }
+
+        boolean isEnabled() {
+            return maxAgeMillis > 0 || maxCount > 0;
+        }
+
+        long maxAgeMillis() {
+            return maxAgeMillis;
+        }
+
+        long maxCount() {
+            return maxCount;
+        }
+
+        // "maxAgeDays=30,maxCount=5000" biçimindeki tanım; verilmeyen sınır defaults'tan alınır
+        static Policy parse(String spec, Policy defaults) {
+            long maxAgeMillis = defaults.maxAgeMillis;
+            long maxCount = defaults.maxCount;
+            for (String entry : spec.split(",")) {
+                String[] pair = entry.split("=", 2);
+                String key = pair[0].trim();
+                long value = Long.parseLong(pair.length == 2 ? pair[1].trim() : "");
+                switch (key) {
+                    case "maxAgeDays" -> maxAgeMillis = TimeUnit.DAYS.toMillis(value);
+                    case "maxCount" -> maxCount = value;
+                    default -> throw new IllegalArgumentException("bilinmeyen anahtar: " + key);
+                }
+            }
+            return new Policy(maxAgeMillis, maxCount);
+        }
+    }
+
+    private final MessageStore store;
+    private final MessageArchive archive;
+    private final Policy defaultPolicy;
+    private final Map<Integer, Policy> roomPolicies;
+    private final IntPredicate owns;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mesaj-arsivleyici");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastRunMillis;
+
+    MessageRetention(MessageStore store, MessageArchive archive, Policy defaultPolicy, Map<Integer, Policy> roomPolicies, IntPredicate owns,
+            int chunkSize, long pauseMillis, long intervalMillis) {
+        this.store = store;
+        this.archive = archive;
+        this.defaultPolicy = defaultPolicy;
+        this.roomPolicies = roomPolicies;
+        this.owns = owns;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+        this.intervalMillis = intervalMillis;
+    }
+
+    // owns: bu düğümün arşivlemesi gereken odalar (tek düğümde hepsi)
+    static MessageRetention fromConfig(MessageStore store, MessageArchive archive, IntPredicate owns) {
+        Policy defaults = new Policy(TimeUnit.DAYS.toMillis(ServerConfig.RETENTION_MAX_AGE_DAYS), ServerConfig.RETENTION_MAX_COUNT);
+        return new MessageRetention(store, archive, defaults, parseRoomPolicies(ServerConfig.RETENTION_ROOMS, defaults), owns,
+                ServerConfig.RETENTION_CHUNK, ServerConfig.RETENTION_PAUSE_MS, ServerConfig.RETENTION_INTERVAL_MS);
+    }
+
+    // "4:maxAgeDays=30,maxCount=5000;15:maxCount=500" -> oda id -> politika. Geçersiz tanım atlanır (oda varsayılanı kullanır).
+    static Map<Integer, Policy> parseRoomPolicies(String spec, Policy defaults) {
+        Map<Integer, Policy> policies = new HashMap<>();
+        for (String entry : spec.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            try {
+                int colon = entry.indexOf(':');
+                policies.put(Integer.parseInt(entry.substring(0, colon).trim()), Policy.parse(entry.substring(colon + 1), defaults));
+            } catch (RuntimeException e) {
+                System.err.println("Geçersiz saklama politikası atlandı: " + entry.trim() + " (" + e.getMessage() + ")");
+            }
+        }
+        return policies;
+    }
+
+    Policy policyFor(int roomId) {
+        return roomPolicies.getOrDefault(roomId, defaultPolicy);
+    }
+
+    boolean isEnabled() {
+        return defaultPolicy.isEnabled() || roomPolicies.values().stream().anyMatch(Policy::isEnabled);
+    }
+
+    // Hiçbir politika yoksa görev zamanlanmaz
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::runSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println("Mesaj saklama etkin: " + intervalMillis / 1000 + " sn'de bir süresi dolan mesajlar arşive taşınacak.");
+    }
+
+    private void runSafely() {
+        try {
+            long start = System.nanoTime();
+            long archived = runOnce();
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (archived > 0) {
+                System.out.println(archived + " mesaj arşive taşındı (" + lastRunMillis + " ms).");
+            }
+        } catch (SQLException | IOException e) {
+            System.err.println("Mesajlar arşive taşınamadı: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Zamanlanmış görevden kaçan istisna sonraki turları sessizce iptal ederdi
+            System.err.println("Mesaj arşivleme turu başarısız: " + e);
+        }
+    }
+
+    // Politikası olan odaları bir kez dolaşır ve arşive taşınan mesaj sayısını döner.
+    // Varsayılan politika yoksa yalnızca odaya özel politikası olan odalara bakılır; tüm odalar taranmaz.
+    long runOnce() throws SQLException, IOException, InterruptedException {
+        List<Integer> roomIds = defaultPolicy.isEnabled() ? store.roomsWithMessages() : new ArrayList<>(roomPolicies.keySet());
+        long now = System.currentTimeMillis();
+        long archived = 0;
+        for (int roomId : roomIds) {
+            Policy policy = policyFor(roomId);
+            if (policy.isEnabled() && owns.test(roomId)) {
+                archived += archiveRoom(roomId, policy, now);
+            }
+        }
+        return archived;
+    }
+
+    // Odanın en eski mesajlarından, yaşı veya sırası sınırı aşan baştaki kısmı arşive taşır
+    private long archiveRoom(int roomId, Policy policy, long now) throws SQLException, IOException, InterruptedException {
+        long overCount = policy.maxCount() > 0 ? Math.max(0, store.countMessages(roomId) - policy.maxCount()) : 0;
+        long cutoffMillis = policy.maxAgeMillis() > 0 ? now - policy.maxAgeMillis() : Long.MIN_VALUE;
+        long archived = 0;
+        while (true) {
+            List<ChatMessage> oldest = store.readOldest(roomId, chunkSize);
+            int expired = 0;
+            while (expired < oldest.size() && (archived + expired < overCount || oldest.get(expired).timestampMillis() < cutoffMillis)) {
+                expired++;
+            }
+            if (expired == 0) {
+                return archived;
+            }
+            List<ChatMessage> batch = oldest.subList(0, expired);
+            // Önce arşiv diske zorlanır, sonra tablo silinir; arada kapanırsa mesaj kaybolmaz, yalnızca bir sonraki turda yeniden arşivlenir
+            archive.append(roomId, batch);
+            store.deleteMessagesThrough(roomId, batch.get(expired - 1).id());
+            archived += expired;
+            if (expired < oldest.size()) {
+                return archived;
+            }
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    // Son turun süresi (ms)
+    long getLastRunMillis() {
+        return lastRunMillis;
+    }
+}
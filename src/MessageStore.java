@@ -0,0 +1,66 @@
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+// Mesajların ve oda üst bilgilerinin saklandığı motor. Sunucu veritabanına yalnızca bu arayüz (ve kullanıcı adları için UserDirectory) üzerinden gider.
+// "jdbc": MySQL'deki messages ve rooms tabloları (varsayılan). "memory": süreç içinde, eş zamanlı erişime uygun yapılarda;
+// sunucu, yük testleri ve CI veritabanı olmadan çalıştırılabilir. "log": mesajlar belleğe eşlenmiş, oda başına günlük dosyalarında
+// (MappedLogMessageStore), odalar jdbc veya bellek deposunda. Motor açılışta -Dchat.store ile seçilir.
+// Hatalar SQLException olarak bildirilir (bellek motoru hata vermez).
+interface MessageStore {
+
+    static MessageStore fromConfig(ConnectionPool dbPool) {
+        if ("memory".equalsIgnoreCase(ServerConfig.STORE)) {
+            System.out.println("Mesaj deposu: bellek (veritabanı kullanılmıyor).");
+            return new InMemoryMessageStore(ServerConfig.MEMORY_STORE_AUTO_CREATE_ROOMS, ServerConfig.MEMORY_STORE_MAX_PER_ROOM);
+        }
+        if ("log".equalsIgnoreCase(ServerConfig.STORE)) {
+            MessageStore rooms = "memory".equalsIgnoreCase(ServerConfig.LOG_STORE_ROOMS)
+                    ? new InMemoryMessageStore(ServerConfig.MEMORY_STORE_AUTO_CREATE_ROOMS, 1)
+                    : new JdbcMessageStore(dbPool);
+            return new MappedLogMessageStore(Path.of(ServerConfig.LOG_STORE_DIR), rooms, ServerConfig.LOG_STORE_SEGMENT_BYTES,
+                    ServerConfig.LOG_STORE_MAX_SEGMENTS, ServerConfig.LOG_STORE_FSYNC);
+        }
+        return new JdbcMessageStore(dbPool);
+    }
+
+    // Mesajları tek işlemde ekler. Tek bir satır reddedildiyse BatchUpdateException fırlatır; yazıcı satırları tek tek yeniden dener.
+    void append(List<ChatMessage> messages) throws SQLException;
+
+    void append(ChatMessage message) throws SQLException;
+
+    // Odanın beforeId'den küçük id'li en yeni "limit" mesajı, eskiden yeniye sıralı.
+    // Gönderen adı motor tarafından biliniyorsa doldurulur; bilinmiyorsa null döner ve çağıran UserDirectory'den çözer.
+    List<ChatMessage> readBefore(int roomId, long beforeId, int limit) throws SQLException;
+
+    // En büyük mesaj id'si (hiç mesaj yoksa 0). Sunucu id atamaya buradan devam eder.
+    long maxMessageId() throws SQLException;
+
+    // Oda silme üç adımdır (bkz. RoomReaper). Önce oda işaretlenir (tombstone): findRoom artık null döner, mesajlara dokunulmaz.
+    // Oda yoksa veya zaten işaretliyse false döner.
+    boolean tombstoneRoom(int roomId) throws SQLException;
+
+    // İşaretli odanın en eski mesajlarından bir parçayı siler ve silinen mesaj sayısını döner; 0: mesaj kalmadı.
+    // Parça en fazla limit mesajdır; motor kendi birimiyle sınırlayabilir (günlük deposu: bir bölüm dosyası).
+    int deleteRoomMessages(int roomId, int limit) throws SQLException;
+
+    // İşaretli odanın kalan mesajlarını (silme sırasında yazılmış olabilir) ve kendisini siler.
+    void purgeRoom(int roomId) throws SQLException;
+
+    // İşaretli ama henüz silinmemiş odalar (sunucu silme bitmeden kapandıysa)
+    List<Integer> tombstonedRooms() throws SQLException;
+
+    // Odanın üst bilgisi; oda yoksa null.
+    RoomDirectory.RoomInfo findRoom(int roomId) throws SQLException;
+
+    // Saklama süresi dolan mesajların arşive taşınması (bkz. MessageRetention): mesajı olan, silinmekte olmayan odalar
+    List<Integer> roomsWithMessages() throws SQLException;
+
+    long countMessages(int roomId) throws SQLException;
+
+    // Odanın en eski "limit" mesajı, eskiden yeniye sıralı
+    List<ChatMessage> readOldest(int roomId, int limit) throws SQLException;
+
+    // Odanın id'si lastId'ye kadar (dahil) olan mesajlarını siler ve silinen sayıyı döner
+    int deleteMessagesThrough(int roomId, long lastId) throws SQLException;
+}
@@ -0,0 +1,320 @@
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Mesajları arkadan yazan (write-behind) kalıcılık aşaması.
+// Eskiden her sohbet satırı yayınlanmadan önce tek tek, otomatik commit ile INSERT ediliyordu; teslim gecikmesine bir veritabanı turu ekleniyordu.
+// Artık mesajlar bellekteki bir günlüğe (journal) eklenir, arka plandaki yazıcı thread'i bunları boyut veya süre eşiğine göre
+// batch'ler halinde tek işlemde (group commit) mesaj deposuna (bkz. MessageStore) yazar.
+final class MessageWriter {
+
+    // Mesajın istemcilere ne zaman iletileceği.
+    // AFTER_BROADCAST: mesaj hemen yayınlanır, kalıcılık arkadan gelir (en düşük gecikme; çökmede son birkaç ms'lik mesajlar kaybolabilir).
+    // AFTER_COMMIT: mesaj, içinde bulunduğu batch commit edildikten sonra yayınlanır (veritabanına yazılmamış mesaj kimseye gösterilmez).
+    enum Durability {
+        AFTER_BROADCAST, AFTER_COMMIT;
+
+        static Durability fromConfig(String value) {
+            return "commit".equalsIgnoreCase(value) ? AFTER_COMMIT : AFTER_BROADCAST;
+        }
+    }
+
+    private final MessageStore store;
+    private final Durability durability;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int retryAttempts;
+    private final long retryBackoffMillis;
+    private final long retryMaxBackoffMillis;
+    // Sınırlı günlük. Doluysa append() yer açılana kadar bekler; veritabanı yetişemezse bellek sınırsız büyümez.
+    private final BlockingQueue<PendingMessage> journal;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final LongAdder appendedCount = new LongAdder();
+    private final LongAdder committedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+
+    MessageWriter(MessageStore store, Durability durability, int batchSize, long flushIntervalMillis, int journalCapacity,
+            int retryAttempts, long retryBackoffMillis, long retryMaxBackoffMillis) {
+        this.store = store;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.retryAttempts = retryAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+        this.journal = new LinkedBlockingQueue<>(journalCapacity);
+        this.writerThread = new Thread(this::runWriter, "mesaj-yazici");
+        // Daemon: JVM kapanışını engellemez; boşaltma kapanış kancasındaki shutdown() ile yapılır.
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    static MessageWriter fromConfig(MessageStore store) {
+        return new MessageWriter(
+                store,
+                Durability.fromConfig(ServerConfig.PERSIST_DURABILITY),
+                ServerConfig.PERSIST_BATCH_SIZE,
+                ServerConfig.PERSIST_FLUSH_INTERVAL_MS,
+                ServerConfig.PERSIST_JOURNAL_CAPACITY,
+                ServerConfig.PERSIST_RETRY_ATTEMPTS,
+                ServerConfig.PERSIST_RETRY_BACKOFF_MS,
+                ServerConfig.PERSIST_RETRY_MAX_BACKOFF_MS
+        );
+    }
+
+    Durability durability() {
+        return durability;
+    }
+
+    // Mesajı günlüğe ekler. Dönen future mesajın batch'i commit edildiğinde tamamlanır.
+    // Mesaj id'si sunucu tarafından önceden atanır; böylece mesaj veritabanına yazılmadan önce de id'siyle (örneğin geçmiş imleci) kullanılabilir.
+    CompletableFuture<Void> append(ChatMessage message) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Mesaj yazıcısı kapatıldı.");
+        }
+        PendingMessage pending = new PendingMessage(message);
+        journal.put(pending);
+        appendedCount.increment();
+        return pending.committed;
+    }
+
+    // Şu ana kadar günlüğe eklenen tüm mesajlar commit edildiğinde tamamlanan bir future döner.
+    // Örneğin oda silinmeden önce, o odanın bekleyen mesajlarının yazılmış olması için kullanılır.
+    CompletableFuture<Void> flush() throws InterruptedException {
+        PendingMessage marker = new PendingMessage(null);
+        journal.put(marker);
+        return marker.committed;
+    }
+
+    // Yeni mesaj kabulünü durdurur, günlükte kalanları yazar ve yazıcı thread'inin bitmesini bekler.
+    void shutdown(long timeoutMillis) {
+        // Yazıcı thread'i kesilmez (interrupt JDBC çağrısının ortasına denk gelebilir); en geç bir bekleme turu sonra durumu görür.
+        running = false;
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!journal.isEmpty()) {
+            System.err.println("Mesaj yazıcısı kapanırken " + journal.size() + " mesaj yazılamadı.");
+        }
+    }
+
+    int getJournalDepth() {
+        return journal.size();
+    }
+
+    long getAppendedCount() {
+        return appendedCount.sum();
+    }
+
+    long getCommittedCount() {
+        return committedCount.sum();
+    }
+
+    long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !journal.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // İlk mesajı bekler, ardından batch dolana veya ilk mesajdan sonra flushInterval geçene kadar toplar.
+    private void collectBatch(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage first = running ? journal.poll(1, TimeUnit.SECONDS) : journal.poll();
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        journal.drainTo(batch, batchSize - batch.size());
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingMessage next = journal.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            journal.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    // Bağlantı hatası, havuz zaman aşımı gibi geçici hatalarda batch artan aralıklarla yeniden denenir; bu sırada günlük dolarsa
+    // append() bekler (geri basınç). Future'lar ancak denemeler tükenince veya kapanışta hatayla tamamlanır.
+    // BatchUpdateException önce SQLSTATE'e göre ayrılır: kilitlenme, kilit bekleme zaman aşımı veya bağlantı kopması da bu türle
+    // gelebilir ve yeniden denenir; yalnızca satıra özgü veri hataları (ör. silinmiş odaya ait mesaj) satır satır yazmaya düşer.
+    private void writeBatch(List<PendingMessage> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            if (!pending.isMarker()) {
+                messages.add(pending.message);
+            }
+        }
+        long backoffMillis = retryBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (!messages.isEmpty()) {
+                    store.append(messages);
+                }
+                batchCount.increment();
+                committedCount.add(messages.size());
+                completeAll(batch);
+                return;
+            } catch (SQLException e) {
+                if (e instanceof BatchUpdateException && !isTransient(e)) {
+                    // Tek bir hatalı satır tüm batch'i düşürmesin
+                    writeOneByOne(batch);
+                    return;
+                }
+                if (attempt >= retryAttempts || !running) {
+                    System.err.println("Mesajlar veritabanına yazılamadı (" + batch.size() + " adet): " + e.getMessage());
+                    failAll(batch, e);
+                    return;
+                }
+                System.err.println("Mesajlar veritabanına yazılamadı, " + backoffMillis + " ms sonra yeniden denenecek: " + e.getMessage());
+                if (!backOff(backoffMillis)) {
+                    failAll(batch, e);
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, retryMaxBackoffMillis);
+            }
+        }
+    }
+
+    // Satır satır yazma: veri hatası olan satır hemen düşer, geçici hata alan satır batch'teki gibi artan aralıklarla yeniden denenir.
+    private void writeOneByOne(List<PendingMessage> batch) {
+        for (PendingMessage pending : batch) {
+            if (pending.isMarker()) {
+                pending.committed.complete(null);
+                continue;
+            }
+            long backoffMillis = retryBackoffMillis;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    store.append(pending.message);
+                    committedCount.increment();
+                    pending.committed.complete(null);
+                    break;
+                } catch (SQLException e) {
+                    if (isTransient(e) && attempt < retryAttempts && running) {
+                        System.err.println("Mesaj kaydedilemedi (oda " + pending.message.roomId() + "), " + backoffMillis
+                                + " ms sonra yeniden denenecek: " + e.getMessage());
+                        if (backOff(backoffMillis)) {
+                            backoffMillis = Math.min(backoffMillis * 2, retryMaxBackoffMillis);
+                            continue;
+                        }
+                    }
+                    System.err.println("Mesaj kaydedilemedi (oda " + pending.message.roomId() + "): " + e.getMessage());
+                    failedCount.increment();
+                    pending.committed.completeExceptionally(e);
+                    break;
+                }
+            }
+        }
+        batchCount.increment();
+    }
+
+    // Yeniden denemeden önce bekler. Bekleme kesilirse yazıcı durdurulur ve false döner (çağıran bekleyenleri hatayla tamamlar).
+    private boolean backOff(long backoffMillis) {
+        retryCount.increment();
+        try {
+            Thread.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return false;
+        }
+    }
+
+    // Yeniden denendiğinde başarılı olabilecek hata: bağlantı kopması (bkz. ConnectionPool.isConnectionFailure), zaman aşımı,
+    // kilitlenme veya serileştirme hatası (SQLSTATE 40xxx), kilit bekleme zaman aşımı (41000; MySQL 1205/1213).
+    // Sürücüler asıl hatayı BatchUpdateException'ın nedenine veya getNextException zincirine koyabildiği için ikisine de bakılır.
+    private static boolean isTransient(SQLException e) {
+        if (ConnectionPool.isConnectionFailure(e)) {
+            return true;
+        }
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            for (Throwable t = next; t != null; t = t.getCause()) {
+                if (t instanceof SQLTransientException) {
+                    return true;
+                }
+                if (t instanceof SQLException sqlException) {
+                    String state = sqlException.getSQLState();
+                    int code = sqlException.getErrorCode();
+                    if ((state != null && (state.startsWith("40") || state.equals("41000"))) || code == 1205 || code == 1213) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void completeAll(List<PendingMessage> batch) {
+        for (PendingMessage pending : batch) {
+            pending.committed.complete(null);
+        }
+    }
+
+    private void failAll(List<PendingMessage> batch, SQLException cause) {
+        for (PendingMessage pending : batch) {
+            if (!pending.isMarker()) {
+                failedCount.increment();
+                pending.committed.completeExceptionally(cause);
+            } else {
+                pending.committed.complete(null);
+            }
+        }
+    }
+
+    private static final class PendingMessage {
+
+        private final ChatMessage message; // null ise flush() işaretçisidir
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private PendingMessage(ChatMessage message) {
+            this.message = message;
+        }
+
+        private boolean isMarker() {
+            return message == null;
+        }
+    }
+}
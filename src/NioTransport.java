@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ServerSocketChannel/Selector tabanlı, engellemeyen taşıma motoru.
+// Sabit sayıda event loop thread'i tüm istemcilerin kabul, okuma, satır ayırma ve yazma işlerini yürütür.
+// Her bağlantı için thread açılmadığından on binlerce boşta bekleyen bağlantı düz bir thread sayısıyla taşınabilir.
+// Metin protokolü aynıdır (userId/username/roomId el sıkışması, LEAVE_ROOM, CLOSE_ROOM, ROOM_CLOSED, UPDATE_PARTICIPANTS_LIST),
+// satırlar DemoServer.ClientHandler'a verilir. Veritabanı gibi bloklayan işler event loop'ta değil, sunucunun iş parçacığı havuzunda yapılır.
+class NioTransport {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final int port;
+    private final EventLoop[] loops;
+    private int nextLoop; // yeni bağlantıları loop'lara sırayla dağıtmak için (yalnızca kabul eden loop kullanır)
+
+    NioTransport(int port, int eventLoopCount) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    // Sunucu kanalını açar ve event loop'ları çalıştırır. İlk loop bu thread üzerinde çalışır ve bağlantıları kabul eder.
+    void run() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(port), 1024);
+            server.configureBlocking(false);
+            server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+
+            for (int i = 1; i < loops.length; i++) {
+                Thread thread = new Thread(loops[i], "nio-loop-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            System.out.println("Server " + port + " üzerinden başlatıldı. Taşıma: nio, event loop sayısı: " + loops.length);
+
+            Thread.currentThread().setName("nio-loop-0");
+            loops[0].run();
+        }
+    }
+
+    private void acceptAll(ServerSocketChannel server) throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop target = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            target.adopt(channel);
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        // Başka thread'lerden gelen işler. Selector yalnızca kendi thread'inden değiştirilir, diğerleri kuyruğa ekleyip wakeup() çağırır.
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+        // Okuması duraklatılmış bağlantılar, devam zamanına göre sıralı (yalnızca loop thread'i kullanır)
+        private final PriorityQueue<NioConnection> pausedReaders = new PriorityQueue<>(Comparator.comparingLong(c -> c.resumeAtNanos));
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void adopt(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        void scheduleFlush(NioConnection connection) {
+            pendingFlushes.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    NioConnection nextResume = pausedReaders.peek();
+                    if (nextResume == null) {
+                        selector.select();
+                    } else {
+                        long waitMillis = TimeUnit.NANOSECONDS.toMillis(nextResume.resumeAtNanos - System.nanoTime());
+                        if (waitMillis > 0) {
+                            selector.select(waitMillis);
+                        } else {
+                            selector.selectNow();
+                        }
+                    }
+                    registerNewChannels();
+                    runPendingFlushes();
+                    resumeDueReaders();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            handleKey(key);
+                        } catch (RuntimeException e) {
+                            // Anahtar başka bir thread'de iptal edildi (CancelledKeyException) veya komut işlenirken hata oluştu:
+                            // yalnızca bu bağlantı kapatılır, loop'taki diğer bağlantılar etkilenmez
+                            if (key.attachment() instanceof NioConnection connection) {
+                                connection.abort(e);
+                            } else {
+                                System.err.println("Event loop hatası: " + e);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Event loop hatası: " + e.getMessage());
+                }
+            }
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                try {
+                    NioConnection connection = new NioConnection(channel, this);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connection.handler = new DemoServer.ClientHandler(connection);
+                } catch (IOException e) {
+                    System.err.println("Bağlantı kaydedilemedi: " + e.getMessage());
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        private void resumeDueReaders() {
+            long now = System.nanoTime();
+            NioConnection connection;
+            while ((connection = pausedReaders.peek()) != null && connection.resumeAtNanos - now <= 0) {
+                pausedReaders.poll();
+                try {
+                    connection.resumeReading();
+                } catch (RuntimeException e) {
+                    connection.abort(e);
+                }
+            }
+        }
+
+        private void runPendingFlushes() {
+            NioConnection connection;
+            while ((connection = pendingFlushes.poll()) != null) {
+                connection.flushScheduled.set(false);
+                try {
+                    connection.flush();
+                } catch (RuntimeException e) {
+                    connection.abort(e);
+                }
+            }
+        }
+
+        private void handleKey(SelectionKey key) throws IOException {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                acceptAll((ServerSocketChannel) key.channel());
+                return;
+            }
+            NioConnection connection = (NioConnection) key.attachment();
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        }
+    }
+
+    // Selector üzerinde kayıtlı tek bir istemci bağlantısı.
+    // send() herhangi bir thread'den çağrılabilir; asıl yazma her zaman bağlantının event loop thread'inde yapılır.
+    static final class NioConnection implements ClientConnection {
+
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // Sınırlı giden kuyruk; yavaş istemci politikası OutboundQueue'dadır. Event loop bu bağlantının yazıcısıdır.
+        private final OutboundQueue outbound = OutboundQueue.fromConfig();
+        // Toplu (gathering) yazma için kuyruktan alınmış, henüz tamamen yazılamamış tamponlar
+        private final ByteBuffer[] writing = new ByteBuffer[16];
+        private int writingStart;
+        private int writingEnd;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final AtomicBoolean closedFlag = new AtomicBoolean();
+        private byte[] lineBuffer = new byte[256];
+        private int lineLength;
+        // İkili protokole geçildiyse gelen baytlar satır yerine çerçeve olarak çözülür
+        private volatile boolean binary;
+        private BinaryFrames.Decoder frameDecoder;
+        private volatile FrameCompressor compressor; // sıkıştırma seçildiyse; çerçeveler event loop'ta sıkıştırılır
+        private SelectionKey key;
+        private DemoServer.ClientHandler handler;
+        private volatile boolean closing;
+        // Giriş bütçesi bittiği için OP_READ kapalı; okuma tamponunda ve çözücüde işlenmemiş baytlar kalabilir (yalnızca loop thread'i)
+        private boolean readPaused;
+        private long resumeAtNanos;
+
+        private NioConnection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            outbound.watchLag(this::disconnectSlowConsumer);
+        }
+
+        @Override
+        public void send(OutboundMessage message) {
+            if (closing || closedFlag.get()) {
+                return;
+            }
+            if (!outbound.offer(message)) {
+                disconnectSlowConsumer();
+                return;
+            }
+            requestFlush();
+        }
+
+        @Override
+        public void close() {
+            if (closedFlag.get()) {
+                return;
+            }
+            // Kuyruktaki satırlar (örneğin ROOM_CLOSED) gönderildikten sonra kanal kapatılır.
+            closing = true;
+            outbound.close();
+            requestFlush();
+        }
+
+        // El sıkışmadaki HELLO satırı işlenirken event loop thread'inde çağrılır; okuma tamponunda kalan baytlar çerçeve olarak çözülür.
+        @Override
+        public void useBinaryFrames() {
+            frameDecoder = new BinaryFrames.Decoder(ServerConfig.BINARY_MAX_FRAME_BYTES);
+            binary = true;
+        }
+
+        @Override
+        public void useCompression() {
+            compressor = FrameCompressor.fromConfig();
+        }
+
+        private void requestFlush() {
+            if (flushScheduled.compareAndSet(false, true)) {
+                loop.scheduleFlush(this);
+            }
+        }
+
+        // Yalnızca event loop thread'inde çağrılır.
+        private void onReadable() {
+            try {
+                int read = 0;
+                while (!readPaused && (read = channel.read(readBuffer)) > 0) {
+                    ServerMetrics.bytesRead(read);
+                    readBuffer.flip();
+                    if (!processReadBuffer()) {
+                        return;
+                    }
+                }
+                if (!readPaused && read < 0) {
+                    closeNow();
+                }
+            } catch (IOException | CancelledKeyException e) {
+                disconnectBecause(ServerMetrics.DisconnectReason.IO_ERROR);
+                closeNow();
+            }
+        }
+
+        // Okuma modundaki tamponu işler ve temizler. Bağlantı kapandıysa veya okuma duraklatıldıysa kalan baytlar tamponda bırakılır, false döner.
+        private boolean processReadBuffer() throws IOException {
+            if (!binary && !splitLines()) {
+                return false;
+            }
+            // Satırlar ayrılırken ikili protokole geçildiyse aynı tampondaki kalan baytlar çerçevedir
+            if (binary && !frameDecoder.feed(readBuffer, this::onFrame)) {
+                return false;
+            }
+            readBuffer.clear();
+            return true;
+        }
+
+        private boolean onFrame(byte opcode, int roomId, long seq, ByteBuffer payload) {
+            handler.onFrame(opcode, roomId, seq, payload);
+            return !closedFlag.get() && !pauseIfThrottled();
+        }
+
+        // İstemcinin bütçesi bittiyse veya sunucu doluysa OP_READ kapatılır ve bağlantı bekleme süresi sonunda loop tarafından devam ettirilir.
+        // Bu sürede soket okunmaz; istemcinin gönderdikleri çekirdek tamponunda bekler, sunucu belleğinde birikmez.
+        private boolean pauseIfThrottled() {
+            long delay = handler.ingestDelayNanos();
+            if (delay <= 0) {
+                return false;
+            }
+            readPaused = true;
+            resumeAtNanos = System.nanoTime() + delay;
+            updateInterest(writingStart < writingEnd);
+            loop.pausedReaders.add(this);
+            return true;
+        }
+
+        // Önce duraklatılmadan önce okunmuş ama işlenmemiş komutlar işlenir, ardından soket tekrar okunur
+        private void resumeReading() {
+            if (closedFlag.get()) {
+                return;
+            }
+            readPaused = false;
+            try {
+                if (binary && !frameDecoder.drainPending(this::onFrame)) {
+                    return;
+                }
+                if (!processReadBuffer()) {
+                    return;
+                }
+                updateInterest(writingStart < writingEnd);
+            } catch (IOException | CancelledKeyException e) {
+                disconnectBecause(ServerMetrics.DisconnectReason.IO_ERROR);
+                closeNow();
+            }
+        }
+
+        // Okuma duraklatılmışsa OP_READ açılmaz
+        private void updateInterest(boolean wantWrite) {
+            key.interestOps((readPaused ? 0 : SelectionKey.OP_READ) | (wantWrite ? SelectionKey.OP_WRITE : 0));
+        }
+
+        // Okunan baytları '\n' ile satırlara ayırır. Satır sınırı aşılırsa bağlantı kapatılır ve false döner.
+        // İkili protokole geçilirse kalan baytlara dokunmadan durur.
+        private boolean splitLines() {
+            while (readBuffer.hasRemaining() && !binary) {
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    int length = lineLength;
+                    if (length > 0 && lineBuffer[length - 1] == '\r') {
+                        length--;
+                    }
+                    String line = new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+                    lineLength = 0;
+                    handler.onLine(line);
+                    if (closedFlag.get() || pauseIfThrottled()) {
+                        return false;
+                    }
+                } else {
+                    if (lineLength == ServerConfig.NIO_MAX_LINE_BYTES) {
+                        System.err.println("Satır sınırı aşıldı, bağlantı kapatılıyor.");
+                        disconnectBecause(ServerMetrics.DisconnectReason.PROTOCOL_ERROR);
+                        closeNow();
+                        return false;
+                    }
+                    if (lineLength == lineBuffer.length) {
+                        lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, ServerConfig.NIO_MAX_LINE_BYTES));
+                    }
+                    lineBuffer[lineLength++] = b;
+                }
+            }
+            return true;
+        }
+
+        // Yalnızca event loop thread'inde çağrılır. Soket kabul ettiği kadar yazar, kalanı için OP_WRITE bekler.
+        // Kuyruktaki birkaç mesaj tek bir gathering write çağrısıyla yazılır.
+        private void flush() {
+            if (closedFlag.get()) {
+                return;
+            }
+            try {
+                while (true) {
+                    if (writingStart == writingEnd && !fillWriting()) {
+                        break;
+                    }
+                    ServerMetrics.bytesWritten(channel.write(writing, writingStart, writingEnd - writingStart));
+                    while (writingStart < writingEnd && !writing[writingStart].hasRemaining()) {
+                        writing[writingStart++] = null;
+                    }
+                    if (writingStart < writingEnd) {
+                        updateInterest(true);
+                        return;
+                    }
+                }
+                updateInterest(false);
+                if (closing) {
+                    closeNow();
+                }
+            } catch (IOException | CancelledKeyException e) {
+                disconnectBecause(ServerMetrics.DisconnectReason.IO_ERROR);
+                closeNow();
+            }
+        }
+
+        private boolean fillWriting() {
+            writingStart = 0;
+            writingEnd = 0;
+            OutboundMessage message;
+            while (writingEnd < writing.length && (message = outbound.poll()) != null) {
+                // Baytlar kopyalanmaz; tüm alıcılar aynı diziye bakan kendi görünümlerini (ByteBuffer) yazar.
+                writing[writingEnd++] = binary ? message.frameBuffer() : message.textBuffer();
+            }
+            // Alınan grup eşiği aşıyorsa tek bir sıkıştırılmış çerçeveyle değiştirilir.
+            // Sıkıştırılmış tampon bir sonraki gruba kadar geçerlidir; fillWriting yalnızca önceki grup tamamen yazılınca çağrılır.
+            FrameCompressor frameCompressor = compressor;
+            if (frameCompressor != null && writingEnd > 0) {
+                ByteBuffer compressed = frameCompressor.compress(writing, 0, writingEnd);
+                if (compressed != null) {
+                    Arrays.fill(writing, 0, writingEnd, null);
+                    writing[0] = compressed;
+                    writingEnd = 1;
+                }
+            }
+            return writingEnd > 0;
+        }
+
+        int getQueueDepth() {
+            return outbound.size();
+        }
+
+        private void disconnectBecause(ServerMetrics.DisconnectReason reason) {
+            if (handler != null) {
+                handler.markDisconnect(reason);
+            }
+        }
+
+        // Event loop'ta bu bağlantı işlenirken beklenmeyen hata. İptal edilmiş anahtar (bağlantı başka thread'de kapatıldı) olağandır.
+        private void abort(RuntimeException e) {
+            if (e instanceof CancelledKeyException) {
+                disconnectBecause(ServerMetrics.DisconnectReason.IO_ERROR);
+            } else {
+                System.err.println("Bağlantı işlenirken hata: " + e);
+                disconnectBecause(ServerMetrics.DisconnectReason.SERVER_ERROR);
+            }
+            closeNow();
+        }
+
+        private void disconnectSlowConsumer() {
+            System.err.println("Yavaş istemcinin bağlantısı kesiliyor.");
+            disconnectBecause(ServerMetrics.DisconnectReason.SLOW_CONSUMER);
+            closeNow();
+        }
+
+        // Herhangi bir thread'den çağrılabilir (örneğin yavaş istemciyi kesen yayın thread'i).
+        private void closeNow() {
+            if (!closedFlag.compareAndSet(false, true)) {
+                return;
+            }
+            outbound.close();
+            outbound.clear();
+            if (compressor != null) {
+                compressor.close();
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Soket kapatma hatası: " + e.getMessage());
+            }
+            if (handler != null) {
+                handler.onDisconnected();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// İstemcilere gönderilecek, bir kez biçimlendirilip bir kez UTF-8'e çevrilen protokol satırı.
+// Bir yayın yüzlerce üyeye gidebilir; eskiden her alıcının PrintWriter'ı aynı metni tekrar tekrar birleştirip kodluyordu.
+// Artık bayt dizisi bir kez üretilir ve tüm alıcılar aynı salt okunur diziyi yazar.
+final class OutboundMessage {
+
+    private final String line;
+    // Aynı anahtarlı yeni bir mesaj, kuyrukta henüz gönderilmemiş eskisinin yerini alabilir (örneğin katılımcı listesi).
+    private final String coalesceKey;
+    // İkili protokolde çerçeve başlığı: kontrol satırı mı sohbet satırı mı, hangi oda, hangi mesaj id'si
+    private final byte opcode;
+    private final int roomId;
+    private final long seq;
+    // Yavaş istemcinin kuyruğu dolduğunda atılabilir mi? Yalnızca canlı sohbet satırları atılır;
+    // kontrol satırları ve geçmiş sayfaları atılırsa istemcinin protokol durumu (sayfa satır sayısı, katılımcı sürümü) bozulur.
+    private final boolean droppable;
+    // Birlikte gönderilmesi gereken satırlar (geçmiş sayfası); null değilse line/opcode kullanılmaz, baytlar parçaların art arda eklenmesidir
+    private final List<OutboundMessage> parts;
+    private volatile byte[] textBytes; // satır + '\n', ilk ihtiyaçta bir kez üretilir
+    private volatile byte[] frameBytes; // ikili çerçeve, ilk ihtiyaçta bir kez üretilir
+
+    private OutboundMessage(String line, String coalesceKey, byte opcode, int roomId, long seq, boolean droppable,
+                            List<OutboundMessage> parts) {
+        this.line = line;
+        this.coalesceKey = coalesceKey;
+        this.opcode = opcode;
+        this.roomId = roomId;
+        this.seq = seq;
+        this.droppable = droppable;
+        this.parts = parts;
+    }
+
+    // Protokol kontrol satırı (ROOM_CLOSED, HISTORY_CURSOR ...)
+    static OutboundMessage of(String line) {
+        return new OutboundMessage(line, null, BinaryFrames.CONTROL, 0, 0, false, null);
+    }
+
+    // Yavaş istemcinin kuyruğunda aynı anahtarlı eski mesajın yerine geçebilen, yalnızca son hali önemli olan durum mesajı.
+    static OutboundMessage coalescing(String key, String line) {
+        return new OutboundMessage(line, key, BinaryFrames.CONTROL, 0, 0, false, null);
+    }
+
+    // Sohbet alanında gösterilecek satır (mesaj veya bildirim). İkili protokolde hiçbir zaman komut olarak yorumlanmaz.
+    static OutboundMessage chat(int roomId, long messageId, String line) {
+        return new OutboundMessage(line, null, BinaryFrames.CHAT, roomId, messageId, true, null);
+    }
+
+    // Geçmişten gelen sohbet satırı: chat ile aynı çerçeve, ancak yavaş istemci kuyruğunda atılmaz
+    static OutboundMessage history(int roomId, long messageId, String line) {
+        return new OutboundMessage(line, null, BinaryFrames.CHAT, roomId, messageId, false, null);
+    }
+
+    // Kuyrukta tek bir giriş olarak tutulan ve arka arkaya yazılan satırlar (HISTORY_PAGE başlığı, sayfa satırları, imleç).
+    // Araya başka bir satır giremez ve parçalardan biri tek başına atılamaz.
+    static OutboundMessage sequence(List<OutboundMessage> parts) {
+        return new OutboundMessage(null, null, BinaryFrames.CONTROL, 0, 0, false, List.copyOf(parts));
+    }
+
+    // Küme rölesinde başka düğümden gelen mesajı aynı alanlarla yeniden kurar (bkz. Cluster)
+    static OutboundMessage relayed(String line, String coalesceKey, byte opcode, int roomId, long seq, boolean droppable) {
+        return new OutboundMessage(line, coalesceKey, opcode, roomId, seq, droppable, null);
+    }
+
+    byte opcode() {
+        return opcode;
+    }
+
+    int roomId() {
+        return roomId;
+    }
+
+    long seq() {
+        return seq;
+    }
+
+    String coalesceKey() {
+        return coalesceKey;
+    }
+
+    String line() {
+        return line;
+    }
+
+    boolean droppable() {
+        return droppable;
+    }
+
+    // sequence ile kurulduysa parçalar, değilse yalnızca bu mesaj
+    List<OutboundMessage> parts() {
+        return parts != null ? parts : List.of(this);
+    }
+
+    // Satırın UTF-8 baytları (satır sonu dahil). Dönen dizi paylaşılır, değiştirilmemelidir.
+    // Aynı anda iki thread ilk kez çağırırsa dizi iki kez üretilebilir; sonuç aynıdır, bu yüzden kilit gerekmez (volatile yayın yeterli).
+    byte[] textBytes() {
+        byte[] bytes = textBytes;
+        if (bytes == null) {
+            bytes = parts != null ? concat(false) : (line + "\n").getBytes(StandardCharsets.UTF_8);
+            textBytes = bytes;
+        }
+        return bytes;
+    }
+
+    // Paylaşılan diziye bakan, bağlantıya özel konumu olan salt okunur görünüm. Bayt kopyalanmaz.
+    ByteBuffer textBuffer() {
+        return ByteBuffer.wrap(textBytes()).asReadOnlyBuffer();
+    }
+
+    // Aynı satırın ikili çerçevesi (satır sonu olmadan). textBytes gibi bir kez üretilir ve paylaşılır.
+    byte[] frameBytes() {
+        byte[] bytes = frameBytes;
+        if (bytes == null) {
+            bytes = parts != null ? concat(true) : BinaryFrames.encode(opcode, roomId, seq, line.getBytes(StandardCharsets.UTF_8));
+            frameBytes = bytes;
+        }
+        return bytes;
+    }
+
+    ByteBuffer frameBuffer() {
+        return ByteBuffer.wrap(frameBytes()).asReadOnlyBuffer();
+    }
+
+    private byte[] concat(boolean frames) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (OutboundMessage part : parts) {
+            bytes.writeBytes(frames ? part.frameBytes() : part.textBytes());
+        }
+        return bytes.toByteArray();
+    }
+}
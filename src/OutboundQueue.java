@@ -0,0 +1,295 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bir istemciye giden, sınırlı boyutlu mesaj kuyruğu.
+// Yayın yapan thread artık alıcının soketine doğrudan yazmaz, yalnızca bu kuyruğa ekler; kuyruğu bağlantının kendi yazıcısı boşaltır.
+// Böylece TCP penceresi dolmuş tek bir yavaş istemci, odadaki diğer herkese teslimatı durduramaz.
+// Kuyruk dolduğunda ne yapılacağı SlowConsumerPolicy ile seçilir.
+// Yalnızca atılabilir mesajlar (canlı sohbet satırları) atılır; kontrol satırları ve geçmiş sayfaları kapasiteyi aşsa da kuyrukta kalır.
+// Atılamayan mesajlar da kapasitenin iki katını doldurursa istemci hiç okumuyor demektir, bağlantısı kesilir.
+final class OutboundQueue {
+
+    // Yavaş istemci politikası.
+    // DROP_OLDEST: kuyruk doluysa en eski atılabilir mesaj atılır.
+    // COALESCE: aynı birleştirme anahtarına sahip eski mesaj (örneğin eski katılımcı listesi) yenisiyle değiştirilir;
+    //           yine de yer yoksa en eski mesajlar atılır ve istemciye atlanan mesaj sayısını bildiren tek bir satır gönderilir.
+    // DISCONNECT: kuyruk taşarsa veya en eski mesaj maxLag süresinden uzun beklediyse istemcinin bağlantısı kesilir.
+    //             Gecikme yeni mesaj eklenirken ve ayrıca bakım görevinde (disconnectLagging) denetlenir;
+    //             sessiz bir odada takılı kalan istemci de yeni mesaj gelmesini beklemeden kesilir.
+    enum SlowConsumerPolicy {
+        DROP_OLDEST, COALESCE, DISCONNECT;
+
+        static SlowConsumerPolicy fromConfig(String value) {
+            return switch (value.toLowerCase()) {
+                case "coalesce" -> COALESCE;
+                case "disconnect" -> DISCONNECT;
+                default -> DROP_OLDEST;
+            };
+        }
+    }
+
+    // Tüm bağlantılar için toplam ölçümler (kilitsiz sayaçlar)
+    private static final LongAdder totalDepth = new LongAdder();
+    private static final LongAdder droppedCount = new LongAdder();
+    private static final LongAdder coalescedCount = new LongAdder();
+    private static final LongAdder slowConsumerDisconnects = new LongAdder();
+    // Gecikmesi bakım görevinde denetlenen (DISCONNECT politikalı, açık) kuyruklar
+    private static final Set<OutboundQueue> lagWatched = ConcurrentHashMap.newKeySet();
+
+    private final int capacity;
+    private final int hardLimit;
+    private final SlowConsumerPolicy policy;
+    private final long maxLagNanos;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int skippedSinceLastNotice; // COALESCE modunda atlanan, istemciye henüz bildirilmemiş mesaj sayısı
+    private int highWatermark;
+    private boolean closed;
+    private volatile Runnable onLag; // bakım görevi gecikmeyi fark ettiğinde bağlantıyı kesen işlem
+
+    OutboundQueue(int capacity, SlowConsumerPolicy policy, long maxLagMillis) {
+        this.capacity = Math.max(1, capacity);
+        this.hardLimit = this.capacity * 2;
+        this.policy = policy;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+    }
+
+    static OutboundQueue fromConfig() {
+        return new OutboundQueue(
+                ServerConfig.OUTBOUND_CAPACITY,
+                SlowConsumerPolicy.fromConfig(ServerConfig.OUTBOUND_POLICY),
+                ServerConfig.OUTBOUND_MAX_LAG_MS
+        );
+    }
+
+    // Mesajı kuyruğa ekler. İstemcinin bağlantısı kesilmeliyse (DISCONNECT politikası) false döner.
+    boolean offer(OutboundMessage message) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+            if (policy == SlowConsumerPolicy.COALESCE && message.coalesceKey() != null) {
+                removeSameKey(message.coalesceKey());
+            }
+            if (policy == SlowConsumerPolicy.DISCONNECT && isLagging(now)) {
+                slowConsumerDisconnects.increment();
+                return false;
+            }
+            if (entries.size() >= capacity) {
+                if (policy == SlowConsumerPolicy.DISCONNECT || entries.size() >= hardLimit) {
+                    slowConsumerDisconnects.increment();
+                    return false;
+                }
+                if (removeOldestDroppable()) {
+                    countDropped();
+                } else if (message.droppable()) {
+                    // Kuyrukta atılabilecek eski mesaj yok: atılan yeni mesajdır
+                    countDropped();
+                    return true;
+                }
+            }
+            entries.addLast(new Entry(message, now));
+            totalDepth.increment();
+            highWatermark = Math.max(highWatermark, entries.size());
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // DISCONNECT politikasında kuyruğu bakım görevinin denetimine ekler. onLag, offer'ın false dönmesiyle aynı işi yapmalıdır
+    // (bağlantıyı kesmek); kuyruk kilidi tutulmadan çağrılır.
+    void watchLag(Runnable onLag) {
+        if (policy != SlowConsumerPolicy.DISCONNECT) {
+            return;
+        }
+        this.onLag = onLag;
+        lagWatched.add(this);
+    }
+
+    // En eski mesajı maxLag'den uzun bekleyen kuyrukların bağlantısını keser. Bakım görevinden düzenli çağrılır.
+    static void disconnectLagging() {
+        for (OutboundQueue queue : lagWatched) {
+            if (queue.isLaggingNow() && lagWatched.remove(queue)) {
+                slowConsumerDisconnects.increment();
+                try {
+                    queue.onLag.run();
+                } catch (RuntimeException e) {
+                    // Tek bağlantının hatası periyodik görevi durdurmasın
+                    System.err.println("Yavaş istemci kesilirken hata: " + e);
+                }
+            }
+        }
+    }
+
+    // Sıradaki mesajı döner, kuyruk boşsa null. NIO event loop'u tarafından kullanılır.
+    OutboundMessage poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sıradaki mesajı bekler. Kuyruk kapatıldı ve boşaldıysa null döner. Engelleyen soket yazıcısı tarafından kullanılır.
+    OutboundMessage take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (entries.isEmpty() && skippedSinceLastNotice == 0 && !closed) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Yeni mesaj kabulünü durdurur; bekleyen yazıcıyı uyandırır. Kuyrukta kalanlar yine de okunabilir.
+    void close() {
+        lagWatched.remove(this);
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Kuyruğu boşaltır (bağlantı zorla kesildiğinde).
+    void clear() {
+        lock.lock();
+        try {
+            totalDepth.add(-entries.size());
+            entries.clear();
+            skippedSinceLastNotice = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return entries.isEmpty() && skippedSinceLastNotice == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getHighWatermark() {
+        lock.lock();
+        try {
+            return highWatermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long getTotalDepth() {
+        return totalDepth.sum();
+    }
+
+    static long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    static long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    static long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects.sum();
+    }
+
+    // lock tutulurken çağrılır
+    private OutboundMessage next() {
+        // Atlanan mesajlar varsa, sıradaki mesajdan önce istemciye bir kez bildirilir
+        if (skippedSinceLastNotice > 0) {
+            int skipped = skippedSinceLastNotice;
+            skippedSinceLastNotice = 0;
+            return OutboundMessage.of("[!] Bağlantınız yavaş olduğu için " + skipped + " mesaj atlandı.");
+        }
+        Entry entry = entries.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        totalDepth.decrement();
+        return entry.message;
+    }
+
+    private boolean isLaggingNow() {
+        lock.lock();
+        try {
+            return !closed && isLagging(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isLagging(long now) {
+        Entry oldest = entries.peekFirst();
+        return oldest != null && now - oldest.enqueuedAtNanos > maxLagNanos;
+    }
+
+    // lock tutulurken çağrılır
+    private boolean removeOldestDroppable() {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            if (it.next().message.droppable()) {
+                it.remove();
+                totalDepth.decrement();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void countDropped() {
+        droppedCount.increment();
+        if (policy == SlowConsumerPolicy.COALESCE) {
+            skippedSinceLastNotice++;
+        }
+    }
+
+    private void removeSameKey(String key) {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            if (key.equals(it.next().message.coalesceKey())) {
+                it.remove();
+                totalDepth.decrement();
+                coalescedCount.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final OutboundMessage message;
+        private final long enqueuedAtNanos;
+
+        private Entry(OutboundMessage message, long enqueuedAtNanos) {
+            this.message = message;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
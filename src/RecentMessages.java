@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bir odanın en son mesajlarını, gönderen adları çözülmüş halde tutan sabit kapasiteli halka tampon (ring buffer).
+// Katılma, yeniden katılma ve yeniden bağlanmada geçmiş veritabanından değil buradan gönderilir; maliyet tampon boyutu kadardır.
+// Tampon ilk katılmada veritabanındaki son mesajlarla bir kez doldurulur (priming), sonrasında her yayın tampona eklenir.
+// Kapasite (mesaj sayısı) ve yaklaşık bellek sınırı aşıldığında en eski mesajlar atılır.
+final class RecentMessages {
+
+    // Tamponda bulunmayan eski mesajları getirir (beforeId'den küçük id'li en yeni "limit" mesaj, eskiden yeniye).
+    interface HistoryLoader {
+        List<ChatMessage> load(long beforeId, int limit) throws SQLException, IOException;
+    }
+
+    // Bir geçmiş sayfası. hasMore: bu sayfadan daha eski mesaj olabilir (istemciye imleç verilmeli).
+    static final class Page {
+
+        private final List<ChatMessage> messages;
+        private final boolean hasMore;
+
+        Page(List<ChatMessage> messages, boolean hasMore) {
+            this.messages = messages;
+            this.hasMore = hasMore;
+        }
+
+        List<ChatMessage> messages() {
+            return messages;
+        }
+
+        boolean hasMore() {
+            return hasMore && !messages.isEmpty();
+        }
+    }
+
+    // Mesaj başına yaklaşık sabit nesne yükü (ChatMessage + String başlıkları)
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final ChatMessage[] ring;
+    private final long maxBytes;
+    private final Lock lock = new ReentrantLock();
+    private int head; // en eski mesajın indeksi
+    private int size;
+    private long bytes;
+    private boolean primed; // veritabanındaki son mesajlarla dolduruldu mu
+    private boolean complete; // odanın tüm geçmişi tamponda mı (daha eski mesaj yok)
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    RecentMessages(int capacity, long maxBytes) {
+        this.ring = new ChatMessage[Math.max(1, capacity)];
+        this.maxBytes = maxBytes;
+    }
+
+    // Yayınlanan mesajı ekler. Tampon henüz doldurulmamış olsa da eklenir; doldurma bu mesajlardan eskisini getirir.
+    // Commit sonrası yayında mesaj, doldurmanın veritabanından okuduğu mesajlar arasında olabilir; tamponda zaten varsa tekrar eklenmez.
+    void append(ChatMessage message) {
+        lock.lock();
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                long id = ring[(head + i) % ring.length].id();
+                if (id == message.id()) {
+                    return;
+                }
+                if (id < message.id()) {
+                    break;
+                }
+            }
+            if (size == ring.length) {
+                dropOldest();
+            }
+            ring[(head + size) % ring.length] = message;
+            size++;
+            bytes += estimateBytes(message);
+            while (bytes > maxBytes && size > 1) {
+                dropOldest();
+            }
+            lastActivityMillis = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // En son "limit" mesaj. Tampon ilk kez kullanılıyorsa önce loader ile veritabanından doldurulur.
+    Page latest(int limit, HistoryLoader loader) throws SQLException, IOException {
+        if (!isPrimed()) {
+            prime(loader);
+        }
+        lock.lock();
+        try {
+            lastActivityMillis = System.currentTimeMillis();
+            int count = Math.min(limit, size);
+            List<ChatMessage> page = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                page.add(ring[(head + i) % ring.length]);
+            }
+            return new Page(page, size > count || !complete);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // beforeId'den eski "limit" mesaj. Tampon bu isteği tek başına karşılayamıyorsa null döner (veritabanına gidilmeli).
+    Page before(long beforeId, int limit) {
+        lock.lock();
+        try {
+            if (!primed) {
+                return null;
+            }
+            List<ChatMessage> page = new ArrayList<>(limit);
+            int index = size - 1;
+            while (index >= 0 && ring[(head + index) % ring.length].id() >= beforeId) {
+                index--;
+            }
+            for (; index >= 0 && page.size() < limit; index--) {
+                page.add(ring[(head + index) % ring.length]);
+            }
+            if (page.size() < limit && !complete) {
+                return null;
+            }
+            Collections.reverse(page);
+            return new Page(page, index >= 0 || !complete);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Tamponu boşaltır; bir sonraki katılmada yeniden doldurulur.
+    void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                ring[(head + i) % ring.length] = null;
+            }
+            head = 0;
+            size = 0;
+            bytes = 0;
+            primed = false;
+            complete = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long idleMillis(long now) {
+        return now - lastActivityMillis;
+    }
+
+    boolean isPrimed() {
+        lock.lock();
+        try {
+            return primed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Tampondaki en eski mesajdan daha eski mesajları, kalan kapasite kadar veritabanından okur. Okuma lock dışında yapılır;
+    // bu sırada yayınlar tampona eklenmeye devam eder. Sonuç tamponla id'ye göre birleştirilir, aynı mesaj iki kez yer almaz.
+    private void prime(HistoryLoader loader) throws SQLException, IOException {
+        long oldestId;
+        int free;
+        lock.lock();
+        try {
+            if (primed) {
+                return;
+            }
+            oldestId = size > 0 ? ring[head].id() : Long.MAX_VALUE;
+            free = ring.length - size;
+        } finally {
+            lock.unlock();
+        }
+        List<ChatMessage> older = free > 0 ? loader.load(oldestId, free) : List.of();
+        lock.lock();
+        try {
+            if (primed) {
+                return; // başka bir thread bu arada doldurdu
+            }
+            if (free > 0) {
+                merge(older, older.size() < free);
+            }
+            primed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // lock tutulurken çağrılır. Tampon ve veritabanından okunan mesajlar id sırasıyla yeniden dizilir; aynı id'de tampondaki kayıt kalır.
+    // Kapasiteyi aşan en eski mesajlar atılır. loadedAll: veritabanında okunanlardan daha eski mesaj yok.
+    private void merge(List<ChatMessage> older, boolean loadedAll) {
+        TreeMap<Long, ChatMessage> byId = new TreeMap<>();
+        for (ChatMessage message : older) {
+            byId.put(message.id(), message);
+        }
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = ring[(head + i) % ring.length];
+            byId.put(message.id(), message);
+        }
+        boolean dropped = false;
+        while (byId.size() > ring.length) {
+            byId.pollFirstEntry();
+            dropped = true;
+        }
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        bytes = 0;
+        for (ChatMessage message : byId.values()) {
+            ring[size++] = message;
+            bytes += estimateBytes(message);
+        }
+        complete = loadedAll && !dropped;
+        while (bytes > maxBytes && size > 1) {
+            dropOldest();
+        }
+    }
+
+    private void dropOldest() {
+        bytes -= estimateBytes(ring[head]);
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        complete = false;
+    }
+
+    private static long estimateBytes(ChatMessage message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (message.text().length() + message.senderName().length());
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bellekteki bir sohbet odası ve üyeleri.
+// Eskiden tüm odalar tek bir kilit (synchronized (rooms) ve global ReentrantLock) ile korunuyordu;
+// 4 numaralı odadaki bir yayın, 15 numaralı odaya katılımı bekletiyordu. Artık her odanın kendi kilidi vardır
+// ve yalnızca üyelik değişiklikleri (katılma, ayrılma, kapatma) bu kilidi alır.
+// Üye listesi CopyOnWriteArrayList'tir: okuma (yayın, bildirim) kilitsiz bir anlık görüntü (snapshot) üzerinde yapılır,
+// üyelik değişiklikleri ise yeni bir dizi kopyalar. Sohbette okuma (her mesaj) yazmadan (katılma/ayrılma) çok daha sık olduğu için uygundur.
+final class Room {
+
+    private final int id;
+    private final List<DemoServer.ClientHandler> members = new CopyOnWriteArrayList<>();
+    private final Lock membershipLock = new ReentrantLock();
+    // Oda haritadan çıkarıldıysa (boşta kalma süresi doldu veya oda kapatıldı) true. Emekli odaya yeni üye eklenmez, yenisi oluşturulur.
+    private volatile boolean retired;
+    // Son katılma veya ayrılma zamanı (membershipLock altında yazılır). Boş oda bu andan itibaren boşta sayılır.
+    private volatile long lastMembershipChangeMillis = System.currentTimeMillis();
+    // Katılımcı listesinin sürümü. Her katılma ve ayrılmada artar (membershipLock altında); istemciler değişiklikleri bu sırayla uygular.
+    private long participantVersion;
+    // Odanın en son mesajları (gönderen adları çözülmüş). Katılmada geçmiş buradan gönderilir.
+    private final RecentMessages recent = new RecentMessages(ServerConfig.RECENT_CAPACITY, ServerConfig.RECENT_MAX_BYTES);
+
+    Room(int id) {
+        this.id = id;
+    }
+
+    RecentMessages recent() {
+        return recent;
+    }
+
+    int id() {
+        return id;
+    }
+
+    // Katılımcı listesinin belirli bir sürümdeki anlık görüntüsü
+    static final class Participants {
+
+        private final long version;
+        private final List<DemoServer.ClientHandler> members;
+
+        private Participants(long version, List<DemoServer.ClientHandler> members) {
+            this.version = version;
+            this.members = members;
+        }
+
+        long version() {
+            return version;
+        }
+
+        List<DemoServer.ClientHandler> members() {
+            return members;
+        }
+    }
+
+    // Üyeyi ekler ve katılımcı listesinin yeni sürümünü döner.
+    // Oda emekliye ayrıldıysa -1 döner; çağıran haritadan güncel odayı tekrar almalıdır.
+    long addMember(DemoServer.ClientHandler client) {
+        membershipLock.lock();
+        try {
+            if (retired) {
+                return -1;
+            }
+            members.add(client);
+            lastMembershipChangeMillis = System.currentTimeMillis();
+            return ++participantVersion;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Üyeyi çıkarır ve katılımcı listesinin yeni sürümünü döner.
+    // Boşalan oda hemen kaldırılmaz: son mesaj tamponuyla birlikte bellekte kalır, süre dolunca retireIfIdle ile çıkarılır.
+    long removeMember(DemoServer.ClientHandler client) {
+        membershipLock.lock();
+        try {
+            members.remove(client);
+            lastMembershipChangeMillis = System.currentTimeMillis();
+            return ++participantVersion;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Odayı kapatır ve kapanış anındaki üyeleri döner. Sonrasında odaya kimse eklenemez.
+    List<DemoServer.ClientHandler> retire() {
+        membershipLock.lock();
+        try {
+            retired = true;
+            List<DemoServer.ClientHandler> snapshot = List.copyOf(members);
+            members.clear();
+            return snapshot;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Oda boşsa ve idleMillis'ten uzun süredir kimse katılmadıysa emekliye ayırır ve true döner (çağıran odayı haritadan kaldırmalıdır).
+    boolean retireIfIdle(long now, long idleMillis) {
+        membershipLock.lock();
+        try {
+            if (retired || !members.isEmpty() || now - lastMembershipChangeMillis < idleMillis) {
+                return false;
+            }
+            retired = true;
+            return true;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Üyeler ve sürüm aynı anda okunur; tam liste (snapshot) gönderirken kullanılır.
+    Participants participants() {
+        membershipLock.lock();
+        try {
+            return new Participants(participantVersion, List.copyOf(members));
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Kilitsiz anlık görüntü. Dönen liste üzerinde dolaşırken üyelik değişse bile hata oluşmaz.
+    List<DemoServer.ClientHandler> members() {
+        return members;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    boolean isEmpty() {
+        return members.isEmpty();
+    }
+}
@@ -0,0 +1,94 @@
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+// Odaların bellekteki üst bilgi tablosu (id, ad, sahibi).
+// Sunucu açılırken doldurulmaz (rooms tablosu yüz binlerce satır olabilir): oda ilk katılmada bir kez depodan okunup eklenir.
+// Katılmada odanın varlığı ve sahiplik kontrolü (CLOSE_ROOM) buradan yapılır, sıcak yolda veritabanına gidilmez.
+// Oda şifresi sunucuda tutulmaz: odayı istemci oluşturur ve şifreyi katılmadan önce kendisi doğrular (bkz. UserScreen).
+// Kapatılan oda tablodan çıkarılır; bellekte oda nesnesi kalmayan odaların bilgisi bakım görevinde (evictUnused) atılır.
+final class RoomDirectory {
+
+    // Bir odanın değişmeyen üst bilgileri
+    static final class RoomInfo {
+
+        private final int id;
+        private final String name;
+        private final int creatorId;
+
+        RoomInfo(int id, String name, int creatorId) {
+            this.id = id;
+            this.name = name;
+            this.creatorId = creatorId;
+        }
+
+        int id() {
+            return id;
+        }
+
+        String name() {
+            return name;
+        }
+
+        int creatorId() {
+            return creatorId;
+        }
+    }
+
+    private final MessageStore store;
+    private final Map<Integer, RoomInfo> rooms = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    RoomDirectory(MessageStore store) {
+        this.store = store;
+    }
+
+    // Odanın üst bilgisi. Tabloda yoksa (sunucu açıldıktan sonra oluşturulmuş oda) depodan okunur; oda hiç yoksa null döner.
+    RoomInfo get(int roomId) throws SQLException {
+        RoomInfo info = rooms.get(roomId);
+        if (info != null) {
+            hits.increment();
+            return info;
+        }
+        misses.increment();
+        info = store.findRoom(roomId);
+        if (info == null) {
+            return null;
+        }
+        RoomInfo existing = rooms.putIfAbsent(roomId, info);
+        return existing != null ? existing : info;
+    }
+
+    // Oda kapatıldığında tablodan çıkarılır
+    void remove(int roomId) {
+        rooms.remove(roomId);
+    }
+
+    // inUse'un kabul etmediği odaların bilgisini atar ve atılan kayıt sayısını döner. Atılan oda gerekirse get ile yeniden okunur.
+    int evictUnused(IntPredicate inUse) {
+        int evicted = 0;
+        for (Iterator<Integer> it = rooms.keySet().iterator(); it.hasNext(); ) {
+            if (!inUse.test(it.next())) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        return rooms.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Oda başına sıralı yürütme şeritleri (mailbox / actor tarzı).
+// Her odanın kendi görev kuyruğu vardır ve bir odanın görevleri aynı anda yalnızca bir iş parçacığında, geldiği sırayla çalışır.
+// Farklı odalar ise ortak iş parçacığı havuzunda paralel çalışır.
+// Adillik: bir şerit tek seferde en fazla "quantum" kadar görev çalıştırır, sonra havuz kuyruğunun sonuna geri döner.
+// Böylece çok yoğun bir oda tüm iş parçacıklarını ele geçirip diğer odaları aç bırakamaz.
+final class RoomLanes {
+
+    private final Executor workers;
+    private final int quantum;
+    private final ConcurrentHashMap<Integer, Lane> lanes = new ConcurrentHashMap<>();
+
+    RoomLanes(Executor workers, int quantum) {
+        this.workers = workers;
+        this.quantum = Math.max(1, quantum);
+    }
+
+    // Görevi odanın şeridine ekler. Aynı odaya eklenen görevler ekleme sırasıyla, birbiri ardına çalışır.
+    // Ekleme haritadaki kayıt üzerinde atomik yapılır; şerit bu sırada bırakılamaz, görev bırakılmış bir şeride düşmez.
+    void execute(int roomId, Runnable task) {
+        lanes.compute(roomId, (id, lane) -> {
+            Lane target = lane != null ? lane : new Lane(id);
+            target.retired = false;
+            target.tasks.add(task);
+            return target;
+        }).schedule();
+    }
+
+    // Oda bellekten kaldırıldığında şeridi de bırakır. Şerit boştaysa hemen, çalışıyorsa veya kuyruğunda görev varsa
+    // bunlar bittikten sonra bırakılır; aynı oda için ikinci bir şerit, ilki bitmeden oluşturulup paralel çalışamaz.
+    void retire(int roomId) {
+        lanes.computeIfPresent(roomId, (id, lane) -> {
+            lane.retired = true;
+            return lane.isIdle() ? null : lane;
+        });
+    }
+
+    int getLaneCount() {
+        return lanes.size();
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int roomId;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Şerit havuzda sıraya alınmış veya çalışıyorsa true. Aynı şeridin iki iş parçacığında birden çalışmasını engeller.
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Havuza verildiği an; havuz kuyruğunda bekleme süresi ölçülür (execute öncesi yazılır, havuz görünürlüğü sağlar)
+        private long scheduledAtNanos;
+        // retire() çağrıldı; şerit boşalınca haritadan çıkarılır. Yazma haritadaki kayıt üzerinde (compute içinde) yapılır.
+        // volatile: retire() "scheduled"ı, şerit de bitişte bu alanı okur; ikisinden en az biri diğerinin yazdığını görür.
+        private volatile boolean retired;
+
+        private Lane(int roomId) {
+            this.roomId = roomId;
+        }
+
+        private boolean isIdle() {
+            return tasks.isEmpty() && !scheduled.get();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                scheduledAtNanos = System.nanoTime();
+                workers.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            ServerMetrics.taskWaited(scheduledAtNanos);
+            try {
+                Runnable task;
+                for (int i = 0; i < quantum && (task = tasks.poll()) != null; i++) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Oda " + roomId + " görevi başarısız: " + e.getMessage());
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // Oda bu şeridin kendi görevinde kaldırıldıysa (ör. oda kapatma) şerit, son görevi bitince bırakılır
+                if (retired) {
+                    lanes.computeIfPresent(roomId, (id, lane) -> lane == this && lane.retired && lane.isIdle() ? null : lane);
+                }
+                // Quantum dolduysa veya bu arada yeni görev geldiyse şerit kuyruğun sonuna yeniden girer
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Kapatılan odaların verisini arka planda silen aşama.
+// Eskiden oda kapatılırken odanın tüm mesajları ve kendisi tek bir işlemde, kapatmayı yapan thread'de siliniyordu; geçmişi uzun bir oda
+// kapanırken üyeler ancak silme bitince çıkarılıyor, işlem boyunca messages tablosunda çok sayıda satır kilitli kalıyordu.
+// Artık kapatma odayı yalnızca işaretler (MessageStore.tombstoneRoom) ve üyeleri hemen çıkarır. Mesajlar bu sınıfın tek thread'inde,
+// sınırlı parçalar halinde ve parçalar arasında bekleyerek silinir; en son oda satırı silinir.
+// Sunucu silme bitmeden kapanırsa işaretli odalar bir sonraki açılışta kaldığı yerden silinir.
+final class RoomReaper {
+
+    // Depo hatasında aynı odanın yeniden deneneceği süre
+    private static final long RETRY_DELAY_MS = 5_000;
+
+    private final MessageStore store;
+    private final MessageWriter writer;
+    private final MessageArchive archive;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    // Kuyrukta veya silinmekte olan odalar; aynı oda iki kez kuyruğa girmez
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private final Thread reaperThread;
+
+    private final LongAdder roomsPurged = new LongAdder();
+    private final LongAdder messagesPurged = new LongAdder();
+
+    RoomReaper(MessageStore store, MessageWriter writer, MessageArchive archive, int chunkSize, long pauseMillis) {
+        this.store = store;
+        this.writer = writer;
+        this.archive = archive;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+        this.reaperThread = new Thread(this::runReaper, "oda-silici");
+        // Daemon: yarıda kalan silme açılışta tamamlanır, kapanışı beklemeye gerek yoktur
+        this.reaperThread.setDaemon(true);
+    }
+
+    static RoomReaper fromConfig(MessageStore store, MessageWriter writer, MessageArchive archive) {
+        return new RoomReaper(store, writer, archive, ServerConfig.ROOM_DELETE_CHUNK, ServerConfig.ROOM_DELETE_PAUSE_MS);
+    }
+
+    // Thread'i başlatır. Önceki çalışmadan işaretli kalan odalar thread'in kendisinde aranır; açılış beklemez.
+    void start() {
+        reaperThread.start();
+    }
+
+    // İşaretlenmiş odayı silme kuyruğuna ekler
+    void submit(int roomId) {
+        if (pending.add(roomId)) {
+            queue.add(roomId);
+        }
+    }
+
+    private void runReaper() {
+        try {
+            resumeTombstoned();
+            while (true) {
+                int roomId = queue.take();
+                try {
+                    purge(roomId);
+                    pending.remove(roomId);
+                } catch (SQLException | IOException | RuntimeException e) {
+                    // Beklenmeyen hatada da thread ölmez; oda kuyrukta kalır, diğer odalar silinmeye devam eder
+                    System.err.println("Oda silinemedi (ID = " + roomId + "), tekrar denenecek: " + e);
+                    Thread.sleep(RETRY_DELAY_MS);
+                    queue.add(roomId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void resumeTombstoned() {
+        try {
+            List<Integer> roomIds = store.tombstonedRooms();
+            if (!roomIds.isEmpty()) {
+                System.out.println("Silinmesi yarıda kalan " + roomIds.size() + " oda siliniyor.");
+            }
+            roomIds.forEach(this::submit);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Silinmesi yarıda kalan odalar okunamadı: " + e.getMessage());
+        }
+    }
+
+    private void purge(int roomId) throws SQLException, IOException, InterruptedException {
+        // Günlükte bu odaya ait yazılmamış mesajlar varsa önce onlar yazılsın; silme bitince eklenen mesaj oda satırının silinmesini engeller.
+        try {
+            writer.flush().get(ServerConfig.PERSIST_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Oda silinmeden önce bekleyen mesajlar yazılamadı: " + e.getMessage());
+        }
+
+        long start = System.nanoTime();
+        long total = 0;
+        int deleted;
+        while ((deleted = store.deleteRoomMessages(roomId, chunkSize)) > 0) {
+            total += deleted;
+            messagesPurged.add(deleted);
+            // Parçalar arasında veritabanı diğer sorgulara bırakılır
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+        store.purgeRoom(roomId);
+        // Arşivlenmiş eski mesajlar da silinir
+        archive.deleteRoom(roomId);
+        roomsPurged.increment();
+        System.out.println("Oda ve ilgili mesajlar silindi: ID = " + roomId + " (" + total + " mesaj, "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+    }
+
+    // Kuyrukta bekleyen veya silinmekte olan oda sayısı
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    long getRoomsPurged() {
+        return roomsPurged.sum();
+    }
+
+    long getMessagesPurged() {
+        return messagesPurged.sum();
+    }
+}
@@ -0,0 +1,184 @@
+// Sunucu ayarları. Varsayılan değerler -D sistem özellikleriyle değiştirilebilir.
+// Örnek: java -Dchat.connectionMode=virtual DemoServer
+public final class ServerConfig {
+
+    // İstemci bağlantılarının hangi tür thread üzerinde çalışacağı.
+    // "platform": her istemci için bir işletim sistemi thread'i (eski davranış)
+    // "virtual": her istemci için bir virtual thread (Java 21+). Binlerce bağlantıda bellek ve zamanlayıcı yükü çok daha düşüktür.
+    public static final String CONNECTION_MODE = stringProperty("chat.connectionMode", "platform");
+
+    // İstemcilerin bağlandığı port. Aynı makinede birden çok düğüm çalıştırmak için değiştirilir.
+    public static final int PORT = intProperty("chat.port", 9091);
+
+    // Taşıma katmanı. "blocking": her bağlantı kendi soketini kendi thread'inde okur (CONNECTION_MODE geçerlidir).
+    // "nio": bağlantılar az sayıda Selector thread'i (event loop) tarafından yönetilir, thread sayısı bağlantı sayısından bağımsızdır.
+    public static final String TRANSPORT = stringProperty("chat.transport", "blocking");
+
+    // NIO modunda event loop thread sayısı. Varsayılan: işlemci çekirdeği sayısı.
+    public static final int NIO_EVENT_LOOPS = Math.max(1, intProperty("chat.nio.eventLoops", Runtime.getRuntime().availableProcessors()));
+
+    // NIO modunda bir satırın alabileceği en fazla bayt. Satır sonu gelmeden bu sınır aşılırsa bağlantı kapatılır.
+    public static final int NIO_MAX_LINE_BYTES = intProperty("chat.nio.maxLineBytes", 64 * 1024);
+
+    // İkili protokolde bir çerçevenin (başlık + yük) alabileceği en fazla bayt. Aşılırsa bağlantı kapatılır.
+    public static final int BINARY_MAX_FRAME_BYTES = Math.max(64, intProperty("chat.binary.maxFrameBytes", 64 * 1024));
+
+    // "deflate" yeteneği bildiren ikili protokol istemcileri için sıkıştırma: açık/kapalı, deflate seviyesi (1-9, -1 varsayılan)
+    // ve yazıcının tek seferde gönderdiği çerçevelerin sıkıştırılması için gereken en az toplam bayt
+    public static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(stringProperty("chat.compression.enabled", "true"));
+    public static final int COMPRESSION_LEVEL = Math.max(-1, Math.min(9, intProperty("chat.compression.level", 6)));
+    public static final int COMPRESSION_THRESHOLD = Math.max(0, intProperty("chat.compression.threshold", 512));
+
+    // İstemci başına giden mesaj kuyruğu: kapasite (mesaj sayısı), yavaş istemci politikası (drop-oldest, coalesce, disconnect)
+    // ve disconnect politikasında en eski mesajın bekleyebileceği en uzun süre.
+    public static final int OUTBOUND_CAPACITY = Math.max(1, intProperty("chat.outbound.capacity", 1024));
+    public static final String OUTBOUND_POLICY = stringProperty("chat.outbound.policy", "drop-oldest");
+    public static final long OUTBOUND_MAX_LAG_MS = longProperty("chat.outbound.maxLagMs", 5000);
+
+    // Odaya katılırken gönderilen ve her HISTORY_BEFORE isteğinde dönen en fazla geçmiş mesaj sayısı
+    public static final int HISTORY_PAGE_SIZE = Math.max(1, intProperty("chat.history.pageSize", 50));
+
+    // Katılımcı değişikliklerini (delta) alan istemcilere, listenin kaç sürümde bir tamamının da gönderileceği
+    public static final int PARTICIPANTS_SNAPSHOT_EVERY = Math.max(1, intProperty("chat.participants.snapshotEvery", 100));
+
+    // Oda başına son mesaj tamponu: en fazla mesaj sayısı, yaklaşık bellek sınırı (bayt) ve
+    // etkinlik olmayan odanın tamponunun boşaltılacağı süre
+    public static final int RECENT_CAPACITY = Math.max(1, intProperty("chat.recent.capacity", 200));
+    public static final long RECENT_MAX_BYTES = Math.max(1024, longProperty("chat.recent.maxBytesPerRoom", 256 * 1024));
+    public static final long RECENT_IDLE_EVICT_MS = Math.max(1000, longProperty("chat.recent.idleEvictMs", 15 * 60 * 1000));
+
+    // Son üyesi ayrılan odanın (son mesaj tamponu, şeridi ve üst bilgisiyle) bellekte kalacağı süre.
+    // Bu sürede yeniden katılınırsa geçmiş veritabanına gitmeden tampondan gönderilir.
+    public static final long ROOM_IDLE_EVICT_MS = Math.max(1000, longProperty("chat.rooms.idleEvictMs", 5 * 60 * 1000));
+
+    // Kapatılan odanın mesajları arka planda parça parça silinir: parça başına en fazla mesaj ve parçalar arasındaki bekleme
+    public static final int ROOM_DELETE_CHUNK = Math.max(1, intProperty("chat.rooms.deleteChunk", 1000));
+    public static final long ROOM_DELETE_PAUSE_MS = Math.max(0, longProperty("chat.rooms.deletePauseMs", 20));
+
+    // Kullanıcı adı önbelleği: en fazla kayıt sayısı ve bir kaydın veritabanından yeniden okunmadan kullanılabileceği süre
+    public static final int USER_CACHE_CAPACITY = Math.max(1, intProperty("chat.users.cacheCapacity", 10_000));
+    public static final long USER_CACHE_TTL_MS = Math.max(0, longProperty("chat.users.cacheTtlMs", 10 * 60 * 1000));
+
+    // Mesaj işleyen ortak iş parçacığı havuzunun boyutu. Varsayılan: 10 veya çekirdek sayısı (hangisi büyükse).
+    public static final int WORKER_THREADS = Math.max(1, intProperty("chat.workers", Math.max(10, Runtime.getRuntime().availableProcessors())));
+
+    // Oda şeritlerinin adilliği: bir oda, havuzu başka odalara bırakmadan önce en fazla kaç görev çalıştırabilir.
+    // Küçük değer odalar arasında daha adil, büyük değer yoğun odada daha yüksek verim sağlar.
+    public static final int LANE_QUANTUM = Math.max(1, intProperty("chat.lanes.quantum", 16));
+
+    // Giriş denetimi. Her bağlantı saniyede ratePerSec komut gönderebilir (burst kadar birikebilir, 0: sınırsız); aşan bağlantının soketi
+    // bütçesi dolana kadar okunmaz. Şeritlerde işlenmeyi bekleyen istemci komutları maxPending'in yarısını aşınca tüm okuyucular
+    // duraklar, maxPending'e ulaşınca yeni sohbet/geçmiş komutları reddedilir (istemciye MESSAGE_REJECTED).
+    public static final double INGEST_RATE_PER_SEC = Math.max(0, intProperty("chat.ingest.ratePerSec", 20));
+    public static final int INGEST_BURST = Math.max(1, intProperty("chat.ingest.burst", 40));
+    public static final int INGEST_MAX_PENDING = Math.max(2, intProperty("chat.ingest.maxPending", 20_000));
+
+    // Veritabanı bağlantı bilgileri
+    public static final String DB_URL = stringProperty("chat.db.url", "jdbc:mysql://localhost:3306/chatapp_db?rewriteBatchedStatements=true");
+    public static final String DB_USER = stringProperty("chat.db.user", "root");
+    public static final String DB_PASSWORD = System.getProperty("chat.db.password", "");
+
+    // Bağlantı havuzu: en fazla açık bağlantı, boşta tutulacak en az bağlantı, bağlantı bekleme süresi,
+    // boşta kalan bağlantının kapatılma süresi, boşta kalan bağlantının yeniden doğrulanma aralığı ve bağlantı başına ifade önbelleği
+    public static final int DB_POOL_SIZE = Math.max(1, intProperty("chat.db.poolSize", 16));
+    public static final int DB_POOL_MIN_IDLE = Math.max(0, intProperty("chat.db.minIdle", 2));
+    public static final long DB_ACQUIRE_TIMEOUT_MS = longProperty("chat.db.acquireTimeoutMs", 5000);
+    public static final long DB_IDLE_TIMEOUT_MS = longProperty("chat.db.idleTimeoutMs", 5 * 60 * 1000);
+    public static final long DB_VALIDATION_INTERVAL_MS = longProperty("chat.db.validationIntervalMs", 30 * 1000);
+    public static final int DB_STATEMENT_CACHE_SIZE = Math.max(1, intProperty("chat.db.statementCacheSize", 32));
+
+    // Mesaj deposu: "jdbc" (MySQL, varsayılan), "memory" (süreç içinde, veritabanı gerekmez; yük testi ve CI için) veya "log".
+    // Bellek deposunda bilinmeyen odaların ilk katılmada oluşturulması ve oda başına tutulacak en fazla mesaj sayısı.
+    public static final String STORE = stringProperty("chat.store", "jdbc");
+    public static final boolean MEMORY_STORE_AUTO_CREATE_ROOMS = Boolean.parseBoolean(stringProperty("chat.store.memory.autoCreateRooms", "true"));
+    public static final int MEMORY_STORE_MAX_PER_ROOM = Math.max(1, intProperty("chat.store.memory.maxPerRoom", 100_000));
+
+    // "log" deposu: mesajlar oda başına belleğe eşlenmiş günlük bölümlerine yazılır (MappedLogMessageStore).
+    // Bölüm boyutu (en az 1MB), oda başına tutulacak en fazla bölüm (0: sınırsız), her batch sonunda diske zorlama
+    // ve oda üst bilgilerinin tutulacağı depo ("jdbc" veya "memory").
+    public static final String LOG_STORE_DIR = stringProperty("chat.store.log.dir", "chat-log");
+    public static final int LOG_STORE_SEGMENT_BYTES = Math.max(1024 * 1024, intProperty("chat.store.log.segmentBytes", 16 * 1024 * 1024));
+    public static final int LOG_STORE_MAX_SEGMENTS = Math.max(0, intProperty("chat.store.log.maxSegmentsPerRoom", 0));
+    public static final boolean LOG_STORE_FSYNC = Boolean.parseBoolean(stringProperty("chat.store.log.fsync", "true"));
+    public static final String LOG_STORE_ROOMS = stringProperty("chat.store.log.rooms", "jdbc");
+
+    // Mesaj kalıcılığı (MessageWriter). durability: "broadcast" (yayınla, sonra yaz) veya "commit" (commit sonrası yayınla).
+    // Batch boyutu veya ilk mesajdan sonraki bekleme süresi dolunca günlük veritabanına yazılır.
+    public static final String PERSIST_DURABILITY = stringProperty("chat.persist.durability", "broadcast");
+    public static final int PERSIST_BATCH_SIZE = Math.max(1, intProperty("chat.persist.batchSize", 256));
+    public static final long PERSIST_FLUSH_INTERVAL_MS = Math.max(0, longProperty("chat.persist.flushIntervalMs", 20));
+    public static final int PERSIST_JOURNAL_CAPACITY = Math.max(1, intProperty("chat.persist.journalCapacity", 100_000));
+    public static final long PERSIST_SHUTDOWN_TIMEOUT_MS = longProperty("chat.persist.shutdownTimeoutMs", 10_000);
+    // Batch bağlantı hatası gibi geçici bir nedenle yazılamazsa kaç kez yeniden deneneceği; bekleme her denemede ikiye katlanır (üst sınırla)
+    public static final int PERSIST_RETRY_ATTEMPTS = Math.max(0, intProperty("chat.persist.retryAttempts", 5));
+    public static final long PERSIST_RETRY_BACKOFF_MS = Math.max(1, longProperty("chat.persist.retryBackoffMs", 100));
+    public static final long PERSIST_RETRY_MAX_BACKOFF_MS = Math.max(1, longProperty("chat.persist.retryMaxBackoffMs", 5_000));
+
+    // Mesaj saklama ve soğuk arşiv (bkz. MessageRetention). Varsayılan politika tüm odalara uygulanır (0: sınır yok, saklama kapalı);
+    // rooms ile oda bazında değiştirilir: "4:maxAgeDays=30,maxCount=5000;15:maxCount=500". Yaşı veya odadaki sırası sınırı aşan mesaj
+    // arşiv dizinine taşınır. Görev intervalMs'de bir çalışır; parça başına chunk mesaj taşır ve parçalar arasında pauseMs bekler.
+    public static final int RETENTION_MAX_AGE_DAYS = Math.max(0, intProperty("chat.retention.maxAgeDays", 0));
+    public static final long RETENTION_MAX_COUNT = Math.max(0, longProperty("chat.retention.maxCount", 0));
+    public static final String RETENTION_ROOMS = stringProperty("chat.retention.rooms", "");
+    public static final long RETENTION_INTERVAL_MS = Math.max(1000, longProperty("chat.retention.intervalMs", 60 * 60 * 1000));
+    public static final int RETENTION_CHUNK = Math.max(1, intProperty("chat.retention.chunk", 1000));
+    public static final long RETENTION_PAUSE_MS = Math.max(0, longProperty("chat.retention.pauseMs", 20));
+    public static final String ARCHIVE_DIR = stringProperty("chat.archive.dir", "chat-archive");
+
+    // Küme modu (bkz. Cluster). nodes: tüm düğümlerin istemci adresleri, virgülle (boşsa tek düğüm). nodeIndex: bu düğümün listedeki sırası
+    // (verilmezse chat.port ile eşleşen adres). Röle portu = istemci portu + relayPortOffset. routing: "proxy" veya "redirect".
+    // linkCapacity: düğümler arası bağlantı başına gönderilmeyi bekleyen en fazla çerçeve; dolarsa bağlantı kapatılır.
+    // maxStringBytes: röle çerçevesindeki tek bir metnin (satır, kullanıcı adı) en fazla boyutu; aşan karşı düğümün bağlantısı kapatılır.
+    public static final String CLUSTER_NODES = stringProperty("chat.cluster.nodes", "");
+    public static final int CLUSTER_NODE_INDEX = intProperty("chat.cluster.nodeIndex", -1);
+    public static final int CLUSTER_RELAY_PORT_OFFSET = intProperty("chat.cluster.relayPortOffset", 100);
+    public static final String CLUSTER_ROUTING = stringProperty("chat.cluster.routing", "proxy");
+    public static final int CLUSTER_VIRTUAL_NODES = Math.max(1, intProperty("chat.cluster.virtualNodes", 128));
+    public static final int CLUSTER_LINK_CAPACITY = Math.max(1024, intProperty("chat.cluster.linkCapacity", 65_536));
+    public static final int CLUSTER_MAX_STRING_BYTES = Math.max(BINARY_MAX_FRAME_BYTES, intProperty("chat.cluster.maxStringBytes", 1024 * 1024));
+
+    // Çalışma zamanı ölçümlerinin JMX'te yayınlanması (chatapp:*). Kayıt her zaman yapılır, bu ayar yalnızca MBean kaydını kapatır.
+    public static final boolean METRICS_JMX_ENABLED = Boolean.parseBoolean(stringProperty("chat.metrics.jmx", "true"));
+
+    private ServerConfig() {
+    }
+
+    public static boolean isVirtualThreadMode() {
+        return "virtual".equalsIgnoreCase(CONNECTION_MODE);
+    }
+
+    public static boolean isNioTransport() {
+        return "nio".equalsIgnoreCase(TRANSPORT);
+    }
+
+    static String stringProperty(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    static int intProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Geçersiz ayar " + key + "=" + value + ", varsayılan kullanılıyor: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    static long longProperty(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Geçersiz ayar " + key + "=" + value + ", varsayılan kullanılıyor: " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
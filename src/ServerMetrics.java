@@ -0,0 +1,205 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Sunucunun çalışma zamanı ölçümleri. Sıcak yoldaki kayıtlar yalnızca şeritli sayaçlara (LongAdder) ve
+// şeritli gecikme histogramlarına (LatencyHistogram) yazılır; kilit alınmaz, nesne üretilmez, üretimde açık kalabilir.
+// Anlık değerler (oda üyeleri, kuyruk derinlikleri, havuz durumu) kayıt sırasında değil, JMX'ten okunurken hesaplanır.
+// JMX adları: chatapp:type=Server ve chatapp:type=Latency,name=<broadcast|taskWait|db.insert|db.history|...>
+final class ServerMetrics {
+
+    // Bağlantının neden kapandığı. Bir bağlantı için yalnızca ilk belirlenen neden sayılır.
+    enum DisconnectReason {
+        CLIENT_CLOSED,   // istemci bağlantıyı kapattı (pencereyi kapattı, ağ koptu)
+        LEFT_ROOM,       // istemci LEAVE_ROOM gönderdi
+        ROOM_CLOSED,     // oda sahibi odayı kapattı
+        ROOM_NOT_FOUND,  // katılınmak istenen oda yok
+        SLOW_CONSUMER,   // giden kuyruk taştı (OutboundQueue politikası)
+        PROTOCOL_ERROR,  // geçersiz el sıkışma, satır/çerçeve sınırı aşıldı
+        IO_ERROR,        // soket okuma/yazma hatası
+        SERVER_ERROR,    // katılmada veritabanı hatası veya komut işlenirken beklenmeyen hata
+        REDIRECTED       // küme modunda oda başka düğümde, istemci oraya yönlendirildi
+    }
+
+    // Gecikmesi ölçülen veritabanı sorguları
+    enum DbQuery {
+        INSERT("db.insert"),            // mesaj batch'i (veya batch reddedildiğinde tek mesaj)
+        HISTORY("db.history"),          // geçmiş sayfası
+        ROOM_LOOKUP("db.roomLookup"),   // bellekte olmayan odanın üst bilgisi (sahip, şifre)
+        USER_LOOKUP("db.userLookup"),   // önbellekte olmayan kullanıcı adları (toplu)
+        ROOM_TOMBSTONE("db.roomTombstone"), // kapatılan odanın silinmiş olarak işaretlenmesi
+        ROOM_DELETE("db.roomDelete"),   // kapatılan odanın mesajlarından bir parça veya oda satırının silinmesi
+        ARCHIVE("db.archive");          // saklama süresi dolan mesajların okunması veya arşivlendikten sonra silinmesi
+
+        private final String jmxName;
+
+        DbQuery(String jmxName) {
+            this.jmxName = jmxName;
+        }
+    }
+
+    // Gecikmeler nanosaniye olarak tutulur; 60 sn'nin üstü 60 sn'ye kırpılır (en büyük değer ayrıca tam tutulur)
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final LongAdder connectedClients = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder ingestThrottled = new LongAdder();
+    private static final LongAdder ingestRejected = new LongAdder();
+    private static final LongAdder[] disconnects = new LongAdder[DisconnectReason.values().length];
+    private static final LatencyHistogram broadcastLatency = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS);
+    private static final LatencyHistogram taskWait = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS);
+    private static final LatencyHistogram[] dbLatency = new LatencyHistogram[DbQuery.values().length];
+
+    static {
+        for (int i = 0; i < disconnects.length; i++) {
+            disconnects[i] = new LongAdder();
+        }
+        for (int i = 0; i < dbLatency.length; i++) {
+            dbLatency[i] = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS);
+        }
+    }
+
+    private ServerMetrics() {
+    }
+
+    static void clientConnected() {
+        connectedClients.increment();
+    }
+
+    static void clientDisconnected(DisconnectReason reason) {
+        connectedClients.decrement();
+        disconnects[reason.ordinal()].increment();
+    }
+
+    static void bytesRead(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    static void bytesWritten(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    // Bir bağlantının okuması bütçesi bittiği veya sunucu dolu olduğu için duraklatıldı
+    static void ingestThrottled() {
+        ingestThrottled.increment();
+    }
+
+    // Sunucu dolu olduğu için bir istemci komutu reddedildi
+    static void ingestRejected() {
+        ingestRejected.increment();
+    }
+
+    // Bir mesajın odadaki tüm üyelerin kuyruğuna dağıtılma süresi
+    static void broadcastTook(long startNanos) {
+        broadcastLatency.record(System.nanoTime() - startNanos);
+    }
+
+    // Oda şeridinin iş parçacığı havuzu kuyruğunda çalışmayı beklediği süre
+    static void taskWaited(long enqueuedNanos) {
+        taskWait.record(System.nanoTime() - enqueuedNanos);
+    }
+
+    static void dbCallTook(DbQuery query, long startNanos) {
+        dbLatency[query.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    static long getConnectedClients() {
+        return connectedClients.sum();
+    }
+
+    static long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    static long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    static long getIngestThrottled() {
+        return ingestThrottled.sum();
+    }
+
+    static long getIngestRejected() {
+        return ingestRejected.sum();
+    }
+
+    static Map<String, Long> getDisconnectReasons() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (DisconnectReason reason : DisconnectReason.values()) {
+            counts.put(reason.name(), disconnects[reason.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    // Ölçümleri platform MBean sunucusuna kaydeder. server: anlık değerleri sunucunun kendi yapılarından okuyan görünüm.
+    static void register(ServerStatsMXBean server) {
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbeans.registerMBean(server, new ObjectName("chatapp:type=Server"));
+            mbeans.registerMBean(new Latency(broadcastLatency), new ObjectName("chatapp:type=Latency,name=broadcast"));
+            mbeans.registerMBean(new Latency(taskWait), new ObjectName("chatapp:type=Latency,name=taskWait"));
+            for (DbQuery query : DbQuery.values()) {
+                mbeans.registerMBean(new Latency(dbLatency[query.ordinal()]), new ObjectName("chatapp:type=Latency,name=" + query.jmxName));
+            }
+            System.out.println("Ölçümler JMX üzerinden yayınlanıyor (chatapp:*).");
+        } catch (JMException e) {
+            System.err.println("Ölçümler JMX'e kaydedilemedi: " + e.getMessage());
+        }
+    }
+
+    // Bir gecikme histogramının JMX görünümü. Değerler mikrosaniyedir.
+    private static final class Latency implements LatencyMXBean {
+
+        private final LatencyHistogram histogram;
+
+        Latency(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.count();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.mean() / 1000.0;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.valueAtPercentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return histogram.valueAtPercentile(90) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.valueAtPercentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histogram.valueAtPercentile(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.max() / 1000.0;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Map;
+
+// Sunucu hattının JMX arayüzü (chatapp:type=Server). Tüm değerler okunduğu anda hesaplanır; sayaçlar sunucu açıldığından beri toplamdır.
+public interface ServerStatsMXBean {
+
+    // Bağlantılar ve odalar
+    long getConnectedClients();
+
+    int getRoomCount();
+
+    // oda id -> üye sayısı
+    Map<Integer, Integer> getMembersPerRoom();
+
+    // neden -> kapanan bağlantı sayısı
+    Map<String, Long> getDisconnectReasons();
+
+    // İş parçacığı havuzu ve oda şeritleri
+    int getWorkerQueueDepth();
+
+    int getActiveWorkers();
+
+    int getLaneCount();
+
+    // Giriş denetimi: şeritlerde bekleyen istemci komutları, okuma duraklatmaları, reddedilen komutlar
+    int getPendingCommands();
+
+    long getIngestThrottledCount();
+
+    long getIngestRejectedCount();
+
+    // Giden kuyruklar ve ağ
+    long getOutboundQueueDepth();
+
+    long getOutboundDroppedCount();
+
+    long getOutboundCoalescedCount();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getCompressionRawBytes();
+
+    long getCompressionCompressedBytes();
+
+    // Mesaj kalıcılığı
+    long getMessagesAppended();
+
+    long getMessagesCommitted();
+
+    long getMessageBatches();
+
+    long getMessagesFailed();
+
+    // Geçici hata nedeniyle yeniden denenen batch yazımları
+    long getMessageWriteRetries();
+
+    // Saklama: arşive taşınan mesajlar, arşivden okunan geçmiş sayfaları, son arşivleme turunun süresi (ms)
+    long getMessagesArchived();
+
+    long getArchiveReads();
+
+    long getRetentionLastRunMillis();
+
+    // Kapatılan odaların arka planda silinmesi: bekleyen oda sayısı, silinen odalar ve mesajlar
+    int getRoomDeletesPending();
+
+    long getRoomsPurged();
+
+    long getRoomMessagesPurged();
+
+    // Veritabanı havuzu ve önbellekler
+    int getDbActiveConnections();
+
+    long getDbAcquireTimeouts();
+
+    long getDbAverageAcquireWaitMicros();
+
+    long getUserCacheHits();
+
+    long getUserCacheMisses();
+
+    long getRoomDirectoryHits();
+
+    long getRoomDirectoryMisses();
+}
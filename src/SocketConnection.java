@@ -0,0 +1,205 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Klasik engelleyen soket bağlantısı. İstemcinin kendi thread'i bu nesne üzerinden okur.
+// Yazma işi ise bağlantıya ait ayrı bir yazıcı thread'inde, sınırlı giden kuyruktan yapılır;
+// yayın yapan thread hiçbir zaman bu istemcinin soketinde beklemez.
+class SocketConnection implements ClientConnection {
+
+    private final Socket socket;
+    private final OutputStream out; // giden mesajlar (önceden kodlanmış baytlar yazılır)
+    // Gelen mesajlar. Metin satırları ve ikili çerçeveler aynı tamponlu akıştan okunur; el sıkışma satırından sonra
+    // çerçevelere geçilebildiği için (BufferedReader'ın aksine) satırın ötesinde hiçbir bayt karakter olarak okunmaz.
+    private final DataInputStream in;
+    private final OutboundQueue queue = OutboundQueue.fromConfig();
+    private byte[] lineBuffer = new byte[256]; // yalnızca okuyan thread kullanır
+    private byte[] frameBuffer = new byte[1024]; // yalnızca okuyan thread kullanır
+    private volatile boolean binary;
+    private volatile FrameCompressor compressor; // sıkıştırma seçildiyse; yalnızca yazıcı thread'i kullanır
+    private final ByteBuffer[] batch = new ByteBuffer[64]; // yazıcının tek seferde kuyruktan aldığı çerçeveler
+    private volatile boolean closed;
+    private final Runnable onSlowConsumer; // giden kuyruk taşıp bağlantı kesilirken çağrılır
+
+    SocketConnection(Socket socket, Runnable onSlowConsumer) throws IOException {
+        this.socket = socket;
+        this.onSlowConsumer = onSlowConsumer;
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 8 * 1024);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8 * 1024));
+        queue.watchLag(this::disconnectSlowConsumer);
+
+        // Yazıcı, okuyucu ile aynı türde thread'de çalışır (virtual modda virtual thread)
+        Thread.Builder builder = ServerConfig.isVirtualThreadMode() ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+        builder.name("yazici-" + socket.getPort()).start(this::writeLoop);
+    }
+
+    // Bir sonraki satırı okur, bağlantı kapandıysa null döner.
+    String readLine() throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (length == ServerConfig.NIO_MAX_LINE_BYTES) {
+                throw new IOException("Satır sınırı aşıldı.");
+            }
+            if (length == lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, ServerConfig.NIO_MAX_LINE_BYTES));
+            }
+            lineBuffer[length++] = (byte) b;
+        }
+        if (b == -1 && length == 0) {
+            return null;
+        }
+        ServerMetrics.bytesRead(length + 1);
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Bir sonraki ikili çerçeveyi okuyup işleyiciye verir. Bağlantı kapandıysa veya işleyici durmak istediyse false döner.
+    // Çerçeve her seferinde aynı diziye okunur; yük yalnızca işleyici çağrısı süresince geçerlidir.
+    boolean readFrame(BinaryFrames.FrameHandler handler) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        BinaryFrames.checkLength(length, ServerConfig.BINARY_MAX_FRAME_BYTES);
+        if (length > frameBuffer.length) {
+            frameBuffer = new byte[Math.max(length, frameBuffer.length * 2)];
+        }
+        in.readFully(frameBuffer, 0, length);
+        ServerMetrics.bytesRead(4 + length);
+        ByteBuffer frame = ByteBuffer.wrap(frameBuffer, 0, length);
+        byte opcode = frame.get();
+        int roomId = frame.getInt();
+        long seq = frame.getLong();
+        return handler.onFrame(opcode, roomId, seq, frame.slice());
+    }
+
+    @Override
+    public void useBinaryFrames() {
+        binary = true;
+    }
+
+    @Override
+    public void useCompression() {
+        compressor = FrameCompressor.fromConfig();
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public void send(OutboundMessage message) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(message)) {
+            disconnectSlowConsumer();
+        }
+    }
+
+    @Override
+    public void close() {
+        // Kuyruktaki satırlar (örneğin ROOM_CLOSED) yazıldıktan sonra yazıcı soketi kapatır.
+        queue.close();
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Kuyruğu boşaltana kadar yazar. Hazırda bekleyen mesajlar tek seferde tampona yazılıp bir kez flush edilir.
+    private void writeLoop() {
+        try {
+            OutboundMessage message;
+            while ((message = queue.take()) != null) {
+                if (compressor != null) {
+                    writeCompressed(message);
+                    continue;
+                }
+                long written = write(encoded(message));
+                while ((message = queue.poll()) != null) {
+                    written += write(encoded(message));
+                }
+                out.flush();
+                ServerMetrics.bytesWritten(written);
+            }
+        } catch (IOException e) {
+            // Karşı taraf gitti; okuyan thread bağlantının kapandığını görüp oturumu bitirir.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queue.close();
+            queue.clear();
+            closeSocket();
+            if (compressor != null) {
+                compressor.close();
+            }
+        }
+    }
+
+    // Hazırda bekleyen çerçeveler bir grup olarak toplanır; grup eşiği aşıyorsa tek bir sıkıştırılmış çerçeve yazılır.
+    private void writeCompressed(OutboundMessage first) throws IOException {
+        int count = 0;
+        OutboundMessage message = first;
+        do {
+            // Paylaşılan diziye bakan görünüm; yalnızca okunur, diziye yazılmaz
+            batch[count++] = ByteBuffer.wrap(message.frameBytes());
+        } while (count < batch.length && (message = queue.poll()) != null);
+
+        ByteBuffer compressed = compressor.compress(batch, 0, count);
+        long written = 0;
+        if (compressed != null) {
+            written = compressed.remaining();
+            out.write(compressed.array(), compressed.position(), compressed.remaining());
+        } else {
+            for (int i = 0; i < count; i++) {
+                written += batch[i].remaining();
+                out.write(batch[i].array(), batch[i].arrayOffset() + batch[i].position(), batch[i].remaining());
+            }
+        }
+        Arrays.fill(batch, 0, count, null);
+        out.flush();
+        ServerMetrics.bytesWritten(written);
+    }
+
+    private int write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private byte[] encoded(OutboundMessage message) {
+        return binary ? message.frameBytes() : message.textBytes();
+    }
+
+    private void disconnectSlowConsumer() {
+        System.err.println("Yavaş istemcinin bağlantısı kesiliyor: " + socket.getRemoteSocketAddress());
+        onSlowConsumer.run();
+        abort();
+    }
+
+    // Bekleyen mesajları atıp soketi hemen kapatır.
+    private void abort() {
+        queue.close();
+        queue.clear();
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Soket kapatma hatası: " + e.getMessage());
+        }
+    }
+}
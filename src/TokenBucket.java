@@ -0,0 +1,45 @@
+// Bağlantı başına mesaj hızı sınırı (token bucket).
+// Kova saniyede ratePerSecond jeton dolar, en fazla burst jeton birikir; her istemci komutu bir jeton harcar.
+// Jeton bitince komut reddedilmez: kova eksiye düşer ve okuyucu, kova tekrar bir jetona ulaşana kadar soketi okumayı bırakır.
+// Böylece sel gönderen istemci kendi TCP penceresini doldurur, sunucuda kuyruk büyümez.
+// Senkronize değildir; yalnızca bağlantının okuyucu thread'i (istemci thread'i veya event loop) kullanır.
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    // ratePerSecond <= 0: sınırsız
+    TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    static TokenBucket fromConfig() {
+        return new TokenBucket(ServerConfig.INGEST_RATE_PER_SEC, ServerConfig.INGEST_BURST);
+    }
+
+    void consume() {
+        if (tokensPerNano > 0) {
+            refill(System.nanoTime());
+            tokens -= 1;
+        }
+    }
+
+    // Bir sonraki komut için beklenmesi gereken süre (0: hemen)
+    long nanosUntilAvailable() {
+        if (tokensPerNano <= 0) {
+            return 0;
+        }
+        refill(System.nanoTime());
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
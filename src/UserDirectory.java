@@ -0,0 +1,215 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Sunucu tarafı kullanıcı kimliği önbelleği (userId -> username).
+// Geçmiş gönderilirken aynı birkaç gönderen için users tablosu tekrar tekrar sorgulanıyordu.
+// Artık bir kez çözülen kullanıcı adı bellekte tutulur; eksikler tek bir "WHERE id IN (...)" sorgusuyla toplu olarak getirilir.
+// Kapasite dolduğunda en uzun süredir kullanılmayan kayıt atılır (LRU). Kayıtlar ayrıca belirli bir süre sonra eskimiş sayılır.
+final class UserDirectory {
+
+    // IN listesi bu boyutlara tamamlanır (son id tekrarlanır); böylece bağlantı başına ifade önbelleğinde yalnızca birkaç farklı sorgu olur.
+    private static final int[] BATCH_SIZES = {1, 8, 32, 128};
+
+    private final ConnectionPool pool;
+    private final int capacity;
+    private final long ttlMillis;
+    private final Lock lock = new ReentrantLock();
+    // Erişim sırasına göre tutulan harita: en eski erişilen kayıt başta, kapasite aşılınca o atılır.
+    private final LinkedHashMap<Integer, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    UserDirectory(ConnectionPool pool, int capacity, long ttlMillis) {
+        this.pool = pool;
+        this.capacity = Math.max(1, capacity);
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > UserDirectory.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static UserDirectory fromConfig(ConnectionPool pool) {
+        return new UserDirectory(pool, ServerConfig.USER_CACHE_CAPACITY, ServerConfig.USER_CACHE_TTL_MS);
+    }
+
+    // Tek bir kullanıcının adı. Bilinmeyen kullanıcı için null döner.
+    String username(int userId) throws SQLException {
+        return usernames(List.of(userId)).get(userId);
+    }
+
+    // Verilen kullanıcıların adları. Önbellekte olmayanlar tek seferde veritabanından getirilir.
+    // Veritabanında bulunmayan id'ler dönen haritada yer almaz.
+    Map<Integer, String> usernames(Collection<Integer> userIds) throws SQLException {
+        Map<Integer, String> result = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (Integer userId : userIds) {
+                if (result.containsKey(userId) || missing.contains(userId)) {
+                    continue;
+                }
+                Entry entry = entries.get(userId);
+                if (entry != null && now - entry.loadedAtMillis <= ttlMillis) {
+                    hits.increment();
+                    result.put(userId, entry.username);
+                } else {
+                    misses.increment();
+                    missing.add(userId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Sorgu kilit dışında yapılır; aynı anda aynı kullanıcıyı isteyen iki thread en kötü ihtimalle iki kez sorgular.
+        if (!missing.isEmpty()) {
+            Map<Integer, String> loaded = load(new ArrayList<>(missing));
+            lock.lock();
+            try {
+                for (Map.Entry<Integer, String> e : loaded.entrySet()) {
+                    entries.put(e.getKey(), new Entry(e.getValue(), now));
+                }
+            } finally {
+                lock.unlock();
+            }
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    // Kullanıcı kaydı değiştiğinde (örneğin adı) çağrılır; bir sonraki istekte güncel kayıt veritabanından okunur.
+    void invalidate(int userId) {
+        lock.lock();
+        try {
+            if (entries.remove(userId) != null) {
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Oturum açan istemcinin bildirdiği ad önbellektekinden farklıysa kayıt değişmiş demektir, önbellekteki ad geçersiz sayılır.
+    // İstemcinin bildirdiği ad doğrudan önbelleğe yazılmaz; doğru ad her zaman users tablosundan gelir.
+    void observe(int userId, String reportedUsername) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry != null && !entry.username.equals(reportedUsername)) {
+                entries.remove(userId);
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    long getQueryCount() {
+        return queries.sum();
+    }
+
+    private Map<Integer, String> load(List<Integer> userIds) throws SQLException {
+        Map<Integer, String> loaded = new HashMap<>();
+        return pool.execute(conn -> {
+            int offset = 0;
+            while (offset < userIds.size()) {
+                int batchSize = batchSizeFor(userIds.size() - offset);
+                int count = Math.min(batchSize, userIds.size() - offset);
+                PreparedStatement stmt = conn.prepare(inQuery(batchSize));
+                for (int i = 0; i < batchSize; i++) {
+                    // Boş kalan yerler son id ile doldurulur
+                    stmt.setInt(i + 1, userIds.get(offset + Math.min(i, count - 1)));
+                }
+                queries.increment();
+                long start = System.nanoTime();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        loaded.put(rs.getInt("id"), rs.getString("username"));
+                    }
+                } finally {
+                    ServerMetrics.dbCallTook(ServerMetrics.DbQuery.USER_LOOKUP, start);
+                }
+                offset += count;
+            }
+            return loaded;
+        });
+    }
+
+    private static int batchSizeFor(int remaining) {
+        for (int size : BATCH_SIZES) {
+            if (remaining <= size) {
+                return size;
+            }
+        }
+        return BATCH_SIZES[BATCH_SIZES.length - 1];
+    }
+
+    private static String inQuery(int size) {
+        StringBuilder query = new StringBuilder("SELECT id, username FROM users WHERE id IN (");
+        for (int i = 0; i < size; i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        return query.append(")").toString();
+    }
+
+    private static final class Entry {
+
+        private final String username;
+        private final long loadedAtMillis;
+
+        private Entry(String username, long loadedAtMillis) {
+            this.username = username;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+}
@@ -173,7 +173,7 @@ public class UserScreen {
                     @Override
                     protected Void doInBackground() throws Exception {
                         try (Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/chatapp_db", "root", "")) {
-                            String sql = "SELECT id, room_password FROM rooms WHERE id = ?";
+                            String sql = "SELECT id, room_password FROM rooms WHERE id = ? AND deleted_at IS NULL";
                             PreparedStatement statement = connection.prepareStatement(sql);
                             statement.setInt(1, Integer.parseInt(roomId));
                             ResultSet resultSet = statement.executeQuery();
@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+// Arşivin çökme sonrası davranışı: gün dosyasının sonunda yarım kalan gzip üyesi, ardından eklenen mesajları gizlememeli.
+public class MessageArchiveTest {
+
+    private static final int ROOM_ID = 4;
+    // Tüm mesajlar aynı UTC gününe düşer (tek gün dosyası)
+    private static final long DAY_START = 1_700_000_000_000L - 1_700_000_000_000L % 86_400_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedMessagesAreReadBack() throws Exception {
+        MessageArchive archive = new MessageArchive(folder.getRoot().toPath());
+        archive.append(ROOM_ID, messages(1, 3));
+        archive.append(ROOM_ID, messages(4, 6));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), ids(archive.readBefore(ROOM_ID, Long.MAX_VALUE, 100)));
+        assertEquals(List.of(5L, 6L), ids(archive.readBefore(ROOM_ID, 7, 2)));
+        assertEquals(6, archive.maxMessageId());
+    }
+
+    @Test
+    public void truncatedMemberIsCutBeforeNextAppendAfterRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MessageArchive archive = new MessageArchive(directory);
+        archive.append(ROOM_ID, messages(1, 3));
+        long firstMember = Files.size(dayFile(directory));
+        archive.append(ROOM_ID, messages(4, 6));
+        // İkinci üyenin yazılması ortasında çökme
+        truncate(dayFile(directory), firstMember + (Files.size(dayFile(directory)) - firstMember) / 2);
+
+        // Yeniden açılışta 4-6 tablodan silinmemiştir ve yeniden arşivlenir; ardından yeni mesajlar gelir
+        MessageArchive restarted = new MessageArchive(directory);
+        restarted.append(ROOM_ID, messages(4, 6));
+        restarted.append(ROOM_ID, messages(7, 8));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), ids(restarted.readBefore(ROOM_ID, Long.MAX_VALUE, 100)));
+    }
+
+    @Test
+    public void truncatedMemberIsCutWhenFileChangedUnderRunningArchive() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MessageArchive archive = new MessageArchive(directory);
+        archive.append(ROOM_ID, messages(1, 3));
+        archive.append(ROOM_ID, messages(4, 6));
+        truncate(dayFile(directory), Files.size(dayFile(directory)) - 3);
+
+        archive.append(ROOM_ID, messages(7, 8));
+
+        assertEquals(List.of(1L, 2L, 3L, 7L, 8L), ids(archive.readBefore(ROOM_ID, Long.MAX_VALUE, 100)));
+    }
+
+    @Test
+    public void pagingSkipsDaysWhoseIdsAreNotBeforeCursor() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MessageArchive archive = new MessageArchive(directory);
+        archive.append(ROOM_ID, messages(1, 3, 0));
+        archive.append(ROOM_ID, messages(4, 6, 1));
+        // Yeni gün dosyası okunamaz hale getirilir (yerinde aynı adlı bir dizin); açılırsa okuma hata verir.
+        // İndeks sayesinde açılmamalı (yeniden açılıştan sonra da).
+        Path newerDay = dayFile(directory, 1);
+        Files.delete(newerDay);
+        Files.createDirectory(newerDay);
+
+        assertEquals(List.of(2L, 3L), ids(archive.readBefore(ROOM_ID, 4, 2)));
+        assertEquals(List.of(2L, 3L), ids(new MessageArchive(directory).readBefore(ROOM_ID, 4, 2)));
+    }
+
+    @Test
+    public void daysMissingFromIndexAreStillRead() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        new MessageArchive(directory).append(ROOM_ID, messages(1, 3, 0));
+        new MessageArchive(directory).append(ROOM_ID, messages(4, 6, 1));
+        // İndeks güncellenmeden çökme
+        Files.delete(directory.resolve("room-" + ROOM_ID).resolve("index"));
+
+        assertEquals(List.of(3L, 4L, 5L), ids(new MessageArchive(directory).readBefore(ROOM_ID, 6, 3)));
+    }
+
+    private static List<ChatMessage> messages(long firstId, long lastId) {
+        return messages(firstId, lastId, 0);
+    }
+
+    private static List<ChatMessage> messages(long firstId, long lastId, int day) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (long id = firstId; id <= lastId; id++) {
+            messages.add(new ChatMessage(id, ROOM_ID, 1, "ayse", "mesaj " + id, DAY_START + day * 86_400_000L + id * 1000));
+        }
+        return messages;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        List<Long> ids = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            ids.add(message.id());
+        }
+        return ids;
+    }
+
+    private static Path dayFile(Path directory) throws IOException {
+        return dayFile(directory, 0);
+    }
+
+    // Odanın gün dosyaları tarih sırasıyla; index: kaçıncı gün
+    private static Path dayFile(Path directory, int index) throws IOException {
+        try (var files = Files.list(directory.resolve("room-" + ROOM_ID))) {
+            return files.filter(file -> file.toString().endsWith(".msg.gz")).sorted().skip(index).findFirst().orElseThrow();
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}